@@ -1,22 +1,37 @@
-import java.util.*;
-import java.awt.geom.Point2D;
+import java.util.Arrays;
 
 /**
  * Representation of AStar algorithm. Performs the A* search on a 2D-grid given
  * a agentMap, a start and end point. G Cost for each Forward Move is 1, and
  * different for different tiles depending on the situation of the agent
- * Heuristic is the Manhattan distance Coding 
- * v
+ * Heuristic is the Manhattan distance unless another one (landmarks) is set
+ * 
+ * Long trips (home, treasure) can be searched from both ends at once, each
+ * side only has to cover about half the distance
+ * 
+ * Searches with a deadline are anytime (ARA*): a quick weighted search finds
+ * some path first, then passes with smaller weights improve it, reusing the
+ * g costs found so far, until the path is optimal or time is up
+ * 
  * @author bennygmate
  */
 public class AStar {
-	private final Point2D.Double startPoint;
-	private final Point2D.Double endPoint;
-	private final Map<Point2D.Double, Character> agentMap;
-	private Map<Point2D.Double, Point2D.Double> successPath;
-	private Map<Point2D.Double, Integer> gCost;
-	private Map<Point2D.Double, Integer> fCost;
-	private static final int INFINITY = 999999;
+	private final int startPoint;
+	private final int endPoint;
+	private final TileMap agentMap;
+	// Path found by the last search, start to goal without start
+	private int[] successPath;
+	// Path found costs at most this times the optimal (anytime search)
+	private double bound;
+	// Estimate of the cost left, Manhattan distance unless set
+	private Heuristic heuristic;
+	// Counters the searches add to, null to not count
+	private SearchStats stats;
+	private static final int INFINITY = SearchContext.INFINITY;
+	// Heuristic weights of the anytime search passes, in tenths
+	private static final int[] ANYTIME_WEIGHTS = { 30, 20, 15, 12, 10 };
+	// Expansions between looks at the clock
+	private static final int CLOCK_EVERY = 256;
 
 	/**
 	 * Constructor
@@ -29,103 +44,337 @@ public class AStar {
 	 *            the endPoint point which we will try to find the shortest path
 	 *            to
 	 */
-	public AStar(Map<Point2D.Double, Character> agentMap, Point2D.Double startPoint, Point2D.Double endPoint) {
+	public AStar(TileMap agentMap, int startPoint, int endPoint) {
 		this.agentMap = agentMap;
 		this.startPoint = startPoint;
 		this.endPoint = endPoint;
-		this.successPath = new HashMap<>();
-		this.gCost = new HashMap<>();
-		this.fCost = new HashMap<>();
+		this.successPath = new int[0];
+		this.bound = 1;
+		this.heuristic = Heuristic.MANHATTAN;
+		this.stats = null;
+	}
+
+	/**
+	 * Sets the heuristic the searches below order their open sets by, a
+	 * tighter one than the Manhattan distance expands fewer tiles for the
+	 * same path cost
+	 * 
+	 * @Pre heuristic is admissible and consistent for every cost model this
+	 *      AStar is searched with
+	 * @param heuristic
+	 *            estimate of the cost left to the goal
+	 */
+	public void setHeuristic(Heuristic heuristic) {
+		this.heuristic = heuristic;
+	}
+
+	/**
+	 * Sets counters for the searches below to add their expansions, open set
+	 * use, path length and time to
+	 * 
+	 * @param stats
+	 *            counters to add to, null to not count
+	 */
+	public void setStats(SearchStats stats) {
+		this.stats = stats;
 	}
 
 	/**
 	 * Performs an A* search on the agent Map environment from start to end
-	 * Point(2D) and fills the success path with points to move around map (note
-	 * this one is only commented as they get repetitive
+	 * Point(2D) and fills the success path with points to move around map,
+	 * every search below is this one with a different cost model
 	 * 
-	 * @Pre Destination is reachable
-	 * @param haveKey
-	 *            Agent holds key
-	 * @param haveAxe
-	 *            Agent holds axe
-	 * @param numDyna
-	 *            Agent has number of dynamites
-	 * @param haveRaft
-	 *            Agent has a raft
-	 * @param usingRaft
-	 *            Agent is using the raft
+	 * @param model
+	 *            which tiles can be passed and what stepping onto each costs
+	 * @return g cost of the end point, or INFINITY if it was not reached
 	 */
-	public void callSearch(boolean haveKey, boolean haveAxe, int numDyna, boolean haveRaft, boolean usingRaft) {
-		FCostSort fcs = new FCostSort();
-		PriorityQueue<Point2D.Double> openSet = new PriorityQueue<>(10, fcs);
-		Set<Point2D.Double> closedSet = new HashSet<>();
-		// Initialise agentMap with default value of infinity
-		for (int y = WorldModel.MAX_MAP_Y; y >= -WorldModel.MAX_MAP_Y; y--) {
-			for (int x = -WorldModel.MAX_MAP_X; x <= WorldModel.MAX_MAP_X; x++) {
-				gCost.put(new Point2D.Double(x, y), INFINITY);
-				fCost.put(new Point2D.Double(x, y), INFINITY);
-			}
-		}
+	public int search(CostModel model) {
+		long started = System.nanoTime();
+		// Per tile arrays are reused from the last search on this thread
+		SearchContext context = SearchContext.forThread();
+		context.begin(agentMap.size());
+		// Open set ordered by f cost, tiles keep their place so a cheaper
+		// path just lowers their key
+		OpenSet openSet = context.openSet(model.bucketQueue(), stats);
+		successPath = new int[0];
 		// Initialise start position
-		gCost.put(startPoint, 0);
-		fCost.put(startPoint, ManhattanDistanceHeuristic(startPoint, endPoint));
-		openSet.add(startPoint);
+		int startIndex = agentMap.index(startPoint);
+		context.reach(startIndex, startPoint, 0, Coord.NONE);
+		openSet.push(startIndex, heuristic(startPoint, endPoint));
 		while (!openSet.isEmpty()) {
-			Point2D.Double currentTile = openSet.remove();
-			// If finished exit getSuccessPath() can be called to reconstruct
-			// the path
-			if (currentTile.equals(endPoint)) {
-				return;
+			int currentIndex = openSet.poll();
+			int currentTile = context.pointAt(currentIndex);
+			// If finished keep the path for getSuccessPath()
+			if (currentTile == endPoint) {
+				successPath = tracePath(context, currentIndex);
+				return finish(started, context.gCost(currentIndex));
 			}
-			openSet.remove(currentTile); // Remove from open
-			closedSet.add(currentTile); // Mark as seen
+			context.close(currentIndex); // Mark as seen
+			expand();
 			// Add west, east, north, south tiles, like a plus sign
-			for (int p = 0; p < 4; p++) {
-				int nextX = (int) currentTile.getX();
-				int nextY = (int) currentTile.getY();
-				switch (p) {
-				case 0:
-					nextX += 1;
-					break; // Tile East
-				case 1:
-					nextX -= 1;
-					break; // Tile West
-				case 2:
-					nextY += 1;
-					break; // Tile North
-				case 3:
-					nextY -= 1;
-					break; // Tile South
-				}
-				Point2D.Double nextPoint = new Point2D.Double(nextX, nextY);
+			for (int step : Coord.PLUS) {
+				int nextPoint = currentTile + step;
 				// If next tile seen or not able to be passed, skip
-				char tile = agentMap.get(nextPoint);
-				if (!WorldModel.tilePassWithItem(tile, haveKey, haveAxe, numDyna, haveRaft, usingRaft)) {
+				int stepCost = model.stepCost(agentMap.get(nextPoint));
+				if (stepCost == CostModel.IMPASSABLE) {
 					continue; // Tile can't be passed
 				}
-				if (closedSet.contains(nextPoint))
+				int nextIndex = agentMap.index(nextPoint);
+				if (context.isClosed(nextIndex))
 					continue;
-				// Cost between neighbouring tiles is 1 as assumed
-				int nextPoint_gCost = gCost.get(currentTile) + 1;
+				int nextPoint_gCost = context.gCost(currentIndex) + stepCost;
 				// g(new) > g(old), skip
-				if (nextPoint_gCost >= gCost.get(nextPoint))
+				if (nextPoint_gCost >= context.gCost(nextIndex))
 					continue;
 				// Else, this path is lowest cost so far, put in path
-				successPath.put(nextPoint, currentTile);
-				gCost.put(nextPoint, nextPoint_gCost);
-				fCost.put(nextPoint, nextPoint_gCost + ManhattanDistanceHeuristic(nextPoint, endPoint));
-				// If not on open add, so explore later
-				if (!openSet.contains(nextPoint))
-					openSet.add(nextPoint);
+				context.reach(nextIndex, nextPoint, nextPoint_gCost, currentTile);
+				// Add to open, or move up to its lower f cost
+				openSet.push(nextIndex, nextPoint_gCost + heuristic(nextPoint, endPoint));
 			}
 		}
+		return finish(started, INFINITY);
 	}
 
 	/**
-	 * Performs an A* search on the agent Map environment from start to end
-	 * Point(2D) and fills the success path with points to move around map (This
-	 * is when agent is using raft and wants to go to new island). This is how
-	 * the agent moves across (by having different g costs)
+	 * Bidirectional A*, one search forward from the start and one backward
+	 * from the end point, taking turns with whichever side has less open.
+	 * Every path not found yet costs at least the smallest f cost on each
+	 * side, so once either reaches the best meeting cost that path is
+	 * optimal. A side that runs out of open tiles has been closed in by water
+	 * or walls, nothing else can meet it, so that ends the search too
+	 * 
+	 * Needs every step to cost at least 1 for the Manhattan heuristic to be
+	 * consistent both ways, any other model is searched with search()
+	 * 
+	 * @param model
+	 *            which tiles can be passed and what stepping onto each costs
+	 * @return g cost of the end point, or INFINITY if it was not reached
+	 */
+	public int bidirectionalSearch(CostModel model) {
+		if (model.minStepCost() < 1)
+			return search(model);
+		long started = System.nanoTime();
+		successPath = new int[0];
+		if (startPoint == endPoint)
+			return finish(started, 0);
+		if (model.stepCost(agentMap.get(endPoint)) == CostModel.IMPASSABLE)
+			return finish(started, INFINITY);
+		SearchContext forward = SearchContext.forThread();
+		SearchContext backward = SearchContext.backwardForThread();
+		forward.begin(agentMap.size());
+		backward.begin(agentMap.size());
+		OpenSet forwardOpen = forward.openSet(model.bucketQueue(), stats);
+		OpenSet backwardOpen = backward.openSet(model.bucketQueue(), stats);
+		int startIndex = agentMap.index(startPoint);
+		int endIndex = agentMap.index(endPoint);
+		forward.reach(startIndex, startPoint, 0, Coord.NONE);
+		forwardOpen.push(startIndex, heuristic(startPoint, endPoint));
+		backward.reach(endIndex, endPoint, 0, Coord.NONE);
+		backwardOpen.push(endIndex, heuristic(endPoint, startPoint));
+		// Cheapest path found so far, through the tile where the sides met
+		int bestCost = INFINITY;
+		int meetIndex = -1;
+		while (!forwardOpen.isEmpty() && !backwardOpen.isEmpty()) {
+			if (Math.max(forwardOpen.minKey(), backwardOpen.minKey()) >= bestCost)
+				break;
+			if (forwardOpen.size() <= backwardOpen.size()) {
+				int currentIndex = forwardOpen.poll();
+				int currentTile = forward.pointAt(currentIndex);
+				forward.close(currentIndex);
+				expand();
+				for (int step : Coord.PLUS) {
+					int nextPoint = currentTile + step;
+					int stepCost = model.stepCost(agentMap.get(nextPoint));
+					if (stepCost == CostModel.IMPASSABLE)
+						continue;
+					int nextIndex = agentMap.index(nextPoint);
+					if (forward.isClosed(nextIndex))
+						continue;
+					int nextPoint_gCost = forward.gCost(currentIndex) + stepCost;
+					if (nextPoint_gCost >= forward.gCost(nextIndex))
+						continue;
+					forward.reach(nextIndex, nextPoint, nextPoint_gCost, currentTile);
+					forwardOpen.push(nextIndex, nextPoint_gCost + heuristic(nextPoint, endPoint));
+					// Met the backward search
+					int meetCost = nextPoint_gCost + backward.gCost(nextIndex);
+					if (meetCost < bestCost) {
+						bestCost = meetCost;
+						meetIndex = nextIndex;
+					}
+				}
+			} else {
+				int currentIndex = backwardOpen.poll();
+				int currentTile = backward.pointAt(currentIndex);
+				backward.close(currentIndex);
+				expand();
+				// Backward steps come out of the tile, paying to step onto it
+				int stepCost = model.stepCost(agentMap.get(currentTile));
+				if (stepCost == CostModel.IMPASSABLE)
+					continue; // Start tile, nothing steps onto it
+				for (int step : Coord.PLUS) {
+					int prevPoint = currentTile + step;
+					// Agent tile is left, never stepped onto
+					if (prevPoint != startPoint && model.stepCost(agentMap.get(prevPoint)) == CostModel.IMPASSABLE)
+						continue;
+					int prevIndex = agentMap.index(prevPoint);
+					if (backward.isClosed(prevIndex))
+						continue;
+					int prevPoint_gCost = backward.gCost(currentIndex) + stepCost;
+					if (prevPoint_gCost >= backward.gCost(prevIndex))
+						continue;
+					backward.reach(prevIndex, prevPoint, prevPoint_gCost, currentTile);
+					backwardOpen.push(prevIndex, prevPoint_gCost + heuristic(prevPoint, startPoint));
+					// Met the forward search
+					int meetCost = prevPoint_gCost + forward.gCost(prevIndex);
+					if (meetCost < bestCost) {
+						bestCost = meetCost;
+						meetIndex = prevIndex;
+					}
+				}
+			}
+		}
+		if (meetIndex < 0)
+			return finish(started, INFINITY);
+		// Forward half up to the meeting tile, then the backward half, whose
+		// parents lead on towards the end point
+		int[] firstHalf = tracePath(forward, meetIndex);
+		int length = firstHalf.length;
+		for (int at = backward.parent(meetIndex); at != Coord.NONE; at = backward.parent(agentMap.index(at)))
+			length++;
+		successPath = Arrays.copyOf(firstHalf, length);
+		int i = firstHalf.length;
+		for (int at = backward.parent(meetIndex); at != Coord.NONE; at = backward.parent(agentMap.index(at)))
+			successPath[i++] = at;
+		return finish(started, bestCost);
+	}
+
+	/**
+	 * Anytime Repairing A* (ARA*), weighted A* passes with the weight coming
+	 * down to 1 while there is time. Each pass keeps the g costs of the last
+	 * one: tiles it made cheaper after they were expanded are kept aside and
+	 * opened again in the next pass, along with the open tiles re-keyed for
+	 * the new weight, so later passes only redo what the weight changes
+	 * 
+	 * The first pass always finishes, there is no path to give before it.
+	 * The deadline then stops the passes after it and the last finished
+	 * pass's path is kept, getBound() says how far from optimal it can be
+	 * 
+	 * Needs every step to cost at least 1 for the bound to hold, any other
+	 * model is searched with search()
+	 * 
+	 * @param model
+	 *            which tiles can be passed and what stepping onto each costs
+	 * @param deadline
+	 *            System.nanoTime() to stop improving the path by
+	 * @return g cost of the end point for the path found, or INFINITY if it
+	 *         was not reached
+	 */
+	public int anytimeSearch(CostModel model, long deadline) {
+		bound = 1;
+		if (model.minStepCost() < 1)
+			return search(model);
+		long started = System.nanoTime();
+		SearchContext context = SearchContext.forThread();
+		context.begin(agentMap.size());
+		successPath = new int[0];
+		int endIndex = agentMap.index(endPoint);
+		if (endIndex < 0)
+			return finish(started, INFINITY);
+		OpenSet openSet = context.openSet(false, stats);
+		int startIndex = agentMap.index(startPoint);
+		context.reach(startIndex, startPoint, 0, Coord.NONE);
+		// Tiles still to expand for the next pass, open or made cheaper
+		// after being expanded
+		int[] pending = { startIndex };
+		int numPending = 1;
+		int goalCost = INFINITY;
+		for (int weight : ANYTIME_WEIGHTS) {
+			context.reopen();
+			for (int i = 0; i < numPending; i++) {
+				int index = pending[i];
+				openSet.push(index, weightedCost(context, index, weight));
+			}
+			numPending = 0;
+			int expanded = 0;
+			boolean expired = false;
+			// Stop once nothing open could give a cheaper weighted goal
+			while (!openSet.isEmpty() && openSet.minKey() < 10 * context.gCost(endIndex)) {
+				if (goalCost != INFINITY && ++expanded % CLOCK_EVERY == 0 && System.nanoTime() > deadline) {
+					expired = true;
+					break;
+				}
+				int currentIndex = openSet.poll();
+				int currentTile = context.pointAt(currentIndex);
+				context.close(currentIndex);
+				expand();
+				for (int step : Coord.PLUS) {
+					int nextPoint = currentTile + step;
+					int stepCost = model.stepCost(agentMap.get(nextPoint));
+					if (stepCost == CostModel.IMPASSABLE)
+						continue;
+					int nextIndex = agentMap.index(nextPoint);
+					int nextCost = context.gCost(currentIndex) + stepCost;
+					if (nextCost >= context.gCost(nextIndex))
+						continue;
+					context.reach(nextIndex, nextPoint, nextCost, currentTile);
+					if (!context.isClosed(nextIndex)) {
+						openSet.push(nextIndex, weightedCost(context, nextIndex, weight));
+					} else {
+						if (numPending == pending.length)
+							pending = Arrays.copyOf(pending, 2 * numPending);
+						pending[numPending++] = nextIndex;
+					}
+				}
+			}
+			// A pass cut short keeps the path of the pass before
+			if (expired)
+				break;
+			// Only the first pass can miss the goal, and it runs until nothing
+			// is open
+			if (context.gCost(endIndex) == INFINITY)
+				return finish(started, INFINITY);
+			// Parents set since the goal's g was can make its path cheaper
+			// than that g, the path is what gets followed
+			successPath = tracePath(context, endIndex);
+			goalCost = 0;
+			for (int tile : successPath)
+				goalCost += model.stepCost(agentMap.get(tile));
+			// Every tile left could still lead to a cheaper path, none
+			// cheaper than the least g + h among them
+			int leastCost = INFINITY;
+			for (int i = 0; i < numPending; i++)
+				leastCost = Math.min(leastCost, unweightedCost(context, pending[i]));
+			while (!openSet.isEmpty()) {
+				int index = openSet.poll();
+				leastCost = Math.min(leastCost, unweightedCost(context, index));
+				if (numPending == pending.length)
+					pending = Arrays.copyOf(pending, 2 * numPending);
+				pending[numPending++] = index;
+			}
+			bound = Math.min(weight / 10.0, (leastCost >= goalCost) ? 1 : (double) goalCost / leastCost);
+			if (bound <= 1 || System.nanoTime() > deadline)
+				break;
+		}
+		openSet.clear();
+		return finish(started, goalCost);
+	}
+
+	/**
+	 * @return g + weight * h of a reached tile, in tenths
+	 */
+	private int weightedCost(SearchContext context, int index, int weight) {
+		return 10 * context.gCost(index) + weight * heuristic(context.pointAt(index), endPoint);
+	}
+
+	/**
+	 * @return g + h of a reached tile
+	 */
+	private int unweightedCost(SearchContext context, int index) {
+		return context.gCost(index) + heuristic(context.pointAt(index), endPoint);
+	}
+
+	/**
+	 * Performs an A* search where every passable tile costs 1
 	 * 
 	 * @Pre Destination is reachable
 	 * @param haveKey
@@ -139,159 +388,92 @@ public class AStar {
 	 * @param usingRaft
 	 *            Agent is using the raft
 	 */
-	public void callIslandSearch(boolean haveKey, boolean haveAxe, int numDyna, boolean haveRaft, boolean usingRaft) {
-		FCostSort fcs = new FCostSort();
-		PriorityQueue<Point2D.Double> openSet = new PriorityQueue<>(10, fcs);
-		Set<Point2D.Double> closedSet = new HashSet<>();
-		// Initialise agentMap with default value of infinity
-		for (int y = WorldModel.MAX_MAP_Y; y >= -WorldModel.MAX_MAP_Y; y--) {
-			for (int x = -WorldModel.MAX_MAP_X; x <= WorldModel.MAX_MAP_X; x++) {
-				gCost.put(new Point2D.Double(x, y), INFINITY);
-				fCost.put(new Point2D.Double(x, y), INFINITY);
-			}
-		}
-		// Initialise start position
-		gCost.put(startPoint, 0);
-		fCost.put(startPoint, ManhattanDistanceHeuristic(startPoint, endPoint));
-		openSet.add(startPoint);
-		while (!openSet.isEmpty()) {
-			Point2D.Double currentTile = openSet.remove();
-			if (currentTile.equals(endPoint))
-				return;
-			openSet.remove(currentTile);
-			closedSet.add(currentTile);
-			for (int p = 0; p < 4; p++) {
-				int nextX = (int) currentTile.getX();
-				int nextY = (int) currentTile.getY();
-				switch (p) {
-				case 0:
-					nextX += 1;
-					break;
-				case 1:
-					nextX -= 1;
-					break;
-				case 2:
-					nextY += 1;
-					break;
-				case 3:
-					nextY -= 1;
-					break;
-				}
-				Point2D.Double nextPoint = new Point2D.Double(nextX, nextY);
-				char tile = agentMap.get(nextPoint);
-				if (!WorldModel.tilePassWithItem(tile, haveKey, haveAxe, numDyna, haveRaft, usingRaft)) {
-					continue;
-				}
-				if (closedSet.contains(nextPoint))
-					continue;
-				int nextPoint_gCost = gCost.get(currentTile) + 1;
-				if (tile == WorldModel.OBSTACLE_WATER) {
-					nextPoint_gCost -= 1;
-				}
-				if (haveAxe && tile == WorldModel.OBSTACLE_TREE) {
-					nextPoint_gCost += 2; // Bit more expensive to cut through
-											// trees
-				}
+	public void callSearch(boolean haveKey, boolean haveAxe, int numDyna, boolean haveRaft, boolean usingRaft) {
+		search(CostModel.search(haveKey, haveAxe, numDyna, haveRaft, usingRaft));
+	}
 
-				if (nextPoint_gCost >= gCost.get(nextPoint))
-					continue;
-				successPath.put(nextPoint, currentTile);
-				gCost.put(nextPoint, nextPoint_gCost);
-				fCost.put(nextPoint, nextPoint_gCost + ManhattanDistanceHeuristic(nextPoint, endPoint));
-				if (!openSet.contains(nextPoint))
-					openSet.add(nextPoint);
-			}
-		}
+	/**
+	 * Performs an anytime A* search where every passable tile costs 1, the
+	 * path is optimal unless the deadline cut it short
+	 * 
+	 * @Pre Destination is reachable
+	 * @param haveKey
+	 *            Agent holds key
+	 * @param haveAxe
+	 *            Agent holds axe
+	 * @param numDyna
+	 *            Agent has number of dynamites
+	 * @param haveRaft
+	 *            Agent has a raft
+	 * @param usingRaft
+	 *            Agent is using the raft
+	 * @param deadline
+	 *            System.nanoTime() to stop improving the path by
+	 */
+	public void callAnytimeSearch(boolean haveKey, boolean haveAxe, int numDyna, boolean haveRaft, boolean usingRaft,
+			long deadline) {
+		anytimeSearch(CostModel.search(haveKey, haveAxe, numDyna, haveRaft, usingRaft), deadline);
 	}
 
 	/**
-	 * Performs an A* search on the agent Map environment from start to end
-	 * Point(2D) and fills the success path with points to move around map (This
-	 * is when agent crossed waters and want to go back home through the water
-	 * to water)
+	 * Performs a bidirectional A* search where every passable tile costs 1,
+	 * same path cost as callSearch (Long trips across the map, home or to the
+	 * treasure)
+	 * 
+	 * @Pre Destination is reachable
+	 * @param haveKey
+	 *            Agent holds key
+	 * @param haveAxe
+	 *            Agent holds axe
+	 * @param numDyna
+	 *            Agent has number of dynamites
+	 * @param haveRaft
+	 *            Agent has a raft
+	 * @param usingRaft
+	 *            Agent is using the raft
+	 */
+	public void callBidirectionalSearch(boolean haveKey, boolean haveAxe, int numDyna, boolean haveRaft,
+			boolean usingRaft) {
+		bidirectionalSearch(CostModel.search(haveKey, haveAxe, numDyna, haveRaft, usingRaft));
+	}
+
+	/**
+	 * Performs an A* search (This is when agent is using raft and wants to go
+	 * to new island). This is how the agent moves across (by having different
+	 * g costs)
+	 * 
+	 * @Pre Destination is reachable
+	 * @param haveKey
+	 *            Agent holds key
+	 * @param haveAxe
+	 *            Agent holds axe
+	 * @param numDyna
+	 *            Agent has number of dynamites
+	 * @param haveRaft
+	 *            Agent has a raft
+	 * @param usingRaft
+	 *            Agent is using the raft
+	 */
+	public void callIslandSearch(boolean haveKey, boolean haveAxe, int numDyna, boolean haveRaft, boolean usingRaft) {
+		search(CostModel.island(haveKey, haveAxe, numDyna, haveRaft, usingRaft));
+	}
+
+	/**
+	 * Performs an A* search (This is when agent crossed waters and want to go
+	 * back home through the water to water)
 	 * 
 	 * @Pre Destination is reachable
 	 * @param haveKey
 	 *            Agent holds key
 	 */
 	public void callRiverSearch(boolean haveKey) {
-		FCostSort fcs = new FCostSort();
-		PriorityQueue<Point2D.Double> openSet = new PriorityQueue<>(10, fcs);
-		Set<Point2D.Double> closedSet = new HashSet<>();
-		for (int y = WorldModel.MAX_MAP_Y; y >= -WorldModel.MAX_MAP_Y; y--) {
-			for (int x = -WorldModel.MAX_MAP_X; x <= WorldModel.MAX_MAP_X; x++) {
-				gCost.put(new Point2D.Double(x, y), INFINITY);
-				fCost.put(new Point2D.Double(x, y), INFINITY);
-			}
-		}
-		gCost.put(startPoint, 0);
-		fCost.put(startPoint, ManhattanDistanceHeuristic(startPoint, endPoint));
-		openSet.add(startPoint);
-		while (!openSet.isEmpty()) {
-			Point2D.Double currentTile = openSet.remove();
-			if (currentTile.equals(endPoint))
-				return;
-			openSet.remove(currentTile);
-			closedSet.add(currentTile);
-			for (int p = 0; p < 4; p++) {
-				int nextX = (int) currentTile.getX();
-				int nextY = (int) currentTile.getY();
-				switch (p) {
-				case 0:
-					nextX += 1;
-					break; // Tile East
-				case 1:
-					nextX -= 1;
-					break; // Tile West
-				case 2:
-					nextY += 1;
-					break; // Tile North
-				case 3:
-					nextY -= 1;
-					break; // Tile South
-				}
-				Point2D.Double nextPoint = new Point2D.Double(nextX, nextY);
-				// If next tile seen or not able to be passed, skip
-				char tile = agentMap.get(nextPoint);
-				if (!WorldModel.tilePassWithItem(tile, haveKey, true, 1, true, true)) {
-					continue; // Tile can't be passed
-				}
-				if (closedSet.contains(nextPoint))
-					continue;
-				// Cost between neighbouring tiles is 1 as assumed
-				int nextPoint_gCost = gCost.get(currentTile) + 1;
-				if (tile == WorldModel.OBSTACLE_SPACE) {
-					nextPoint_gCost += 1;
-				}
-				if (tile == WorldModel.OBSTACLE_WATER) {
-					nextPoint_gCost += 1;
-				}
-				if (tile == WorldModel.OBSTACLE_TREE) {
-					nextPoint_gCost += 2; // Bit more expensive to cut through
-											// trees
-				}
-				if (tile == WorldModel.OBSTACLE_WALL) {
-					nextPoint_gCost += 160; // expensive to blast
-				}
-				if (tile == WorldModel.TOOL_TREASURE) {
-					nextPoint_gCost -= 160; // WIN
-				}
-				if (nextPoint_gCost >= gCost.get(nextPoint))
-					continue;
-				successPath.put(nextPoint, currentTile);
-				gCost.put(nextPoint, nextPoint_gCost);
-				fCost.put(nextPoint, nextPoint_gCost + ManhattanDistanceHeuristic(nextPoint, endPoint));
-				if (!openSet.contains(nextPoint))
-					openSet.add(nextPoint);
-			}
-		}
+		search(CostModel.river(haveKey));
 	}
 
 	/**
-	 * Performs an A* search on the agent Map environment from start to end
-	 * Point(2D) and fills the success path with points to move around map (This
-	 * is when agent is using raft and wants use dynamite to blow up wall). This
-	 * is how the agent moves across (by having different g costs)
+	 * Performs an A* search (This is when agent is using raft and wants use
+	 * dynamite to blow up wall). This is how the agent moves across (by having
+	 * different g costs)
 	 * 
 	 * @Pre Destination is reachable
 	 * @param haveKey
@@ -306,408 +488,124 @@ public class AStar {
 	 *            Agent is using the raft
 	 */
 	public void callDynamiteSearch(boolean haveKey, boolean haveAxe, int numDyna, boolean haveRaft, boolean usingRaft) {
-		FCostSort fcs = new FCostSort();
-		PriorityQueue<Point2D.Double> openSet = new PriorityQueue<>(10, fcs);
-		Set<Point2D.Double> closedSet = new HashSet<>();
-		// Initialise agentMap with default value of infinity
-		for (int y = WorldModel.MAX_MAP_Y; y >= -WorldModel.MAX_MAP_Y; y--) {
-			for (int x = -WorldModel.MAX_MAP_X; x <= WorldModel.MAX_MAP_X; x++) {
-				gCost.put(new Point2D.Double(x, y), INFINITY);
-				fCost.put(new Point2D.Double(x, y), INFINITY);
-			}
-		}
-		gCost.put(startPoint, 0);
-		fCost.put(startPoint, ManhattanDistanceHeuristic(startPoint, endPoint));
-		openSet.add(startPoint);
-		while (!openSet.isEmpty()) {
-			Point2D.Double currentTile = openSet.remove();
-			if (currentTile.equals(endPoint))
-				return;
-			openSet.remove(currentTile);
-			closedSet.add(currentTile);
-			for (int p = 0; p < 4; p++) {
-				int nextX = (int) currentTile.getX();
-				int nextY = (int) currentTile.getY();
-				switch (p) {
-				case 0:
-					nextX += 1;
-					break;
-				case 1:
-					nextX -= 1;
-					break;
-				case 2:
-					nextY += 1;
-					break;
-				case 3:
-					nextY -= 1;
-					break;
-				}
-				Point2D.Double nextPoint = new Point2D.Double(nextX, nextY);
-				char tile = agentMap.get(nextPoint);
-				if (!WorldModel.tilePassDynamite(tile, haveKey, haveAxe, numDyna, haveRaft, usingRaft)) {
-					continue; // Tile can't be passed
-				}
-				if (closedSet.contains(nextPoint))
-					continue;
-				int nextPoint_gCost = gCost.get(currentTile) + 1;
-				if (haveRaft && tile == WorldModel.OBSTACLE_WATER) {
-					nextPoint_gCost += 1; // Make going path using water more
-											// expensive
-					usingRaft = true;
-				}
-				if (usingRaft) {
-					if (tile == WorldModel.OBSTACLE_WATER) {
-						nextPoint_gCost -= 50;
-						// MAKE IT CHEAPER TO GO WATER TO DEST
-						// This is because, of islands/rivers
-					}
-				}
-				if (tile == WorldModel.OBSTACLE_WALL) {
-					nextPoint_gCost += 100; // Make it cost lots to use dynamite
-				}
-				// g(new) > g(old), skip
-				if (nextPoint_gCost >= gCost.get(nextPoint))
-					continue;
-				// Else, this path is lowest cost so far, put in path
-				successPath.put(nextPoint, currentTile);
-				gCost.put(nextPoint, nextPoint_gCost);
-				fCost.put(nextPoint, nextPoint_gCost + ManhattanDistanceHeuristic(nextPoint, endPoint));
-				// If not on open add, so explore later
-				if (!openSet.contains(nextPoint))
-					openSet.add(nextPoint);
-			}
-		}
+		search(CostModel.dynamite(haveKey, haveAxe, numDyna, haveRaft, usingRaft));
 	}
 
 	/**
-	 * Performs an A* search on the agent Map environment from start to end
-	 * Point(2D) and fills the success path with points to move around map (This
-	 * is when agent is travelling from water to water)
+	 * Performs an A* search (This is when agent is travelling from water to
+	 * water)
 	 */
 	public void callWaterSearch() {
-		FCostSort fcs = new FCostSort();
-		PriorityQueue<Point2D.Double> openSet = new PriorityQueue<>(10, fcs);
-		Set<Point2D.Double> closedSet = new HashSet<>();
-		for (int y = WorldModel.MAX_MAP_Y; y >= -WorldModel.MAX_MAP_Y; y--) {
-			for (int x = -WorldModel.MAX_MAP_X; x <= WorldModel.MAX_MAP_X; x++) {
-				gCost.put(new Point2D.Double(x, y), INFINITY);
-				fCost.put(new Point2D.Double(x, y), INFINITY);
-			}
-		}
-		gCost.put(startPoint, 0);
-		fCost.put(startPoint, ManhattanDistanceHeuristic(startPoint, endPoint));
-		openSet.add(startPoint);
-		while (!openSet.isEmpty()) {
-			Point2D.Double currentTile = openSet.remove();
-			if (currentTile.equals(endPoint)) {
-				return;
-			}
-			openSet.remove(currentTile);
-			closedSet.add(currentTile);
-			for (int p = 0; p < 4; p++) {
-				int nextX = (int) currentTile.getX();
-				int nextY = (int) currentTile.getY();
-				switch (p) {
-				case 0:
-					nextX += 1;
-					break; // Tile East
-				case 1:
-					nextX -= 1;
-					break; // Tile West
-				case 2:
-					nextY += 1;
-					break; // Tile North
-				case 3:
-					nextY -= 1;
-					break; // Tile South
-				}
-				Point2D.Double nextPoint = new Point2D.Double(nextX, nextY);
-				char tile = agentMap.get(nextPoint);
-				if (!WorldModel.tilePassWater(tile))
-					continue;
-				if (closedSet.contains(nextPoint))
-					continue;
-				int nextPoint_gCost = gCost.get(currentTile) + 1;
-				if (nextPoint_gCost >= gCost.get(nextPoint))
-					continue;
-				successPath.put(nextPoint, currentTile);
-				gCost.put(nextPoint, nextPoint_gCost);
-				fCost.put(nextPoint, nextPoint_gCost + ManhattanDistanceHeuristic(nextPoint, endPoint));
-				if (!openSet.contains(nextPoint))
-					openSet.add(nextPoint);
-			}
-		}
+		search(CostModel.water());
 	}
 
 	/**
-	 * Performs an A* search on the agent Map environment from start to end
-	 * Point(2D) and fills the success path with points to move around map (This
-	 * is when agent is first travelling to their first water tile)
+	 * Performs an A* search (This is when agent is first travelling to their
+	 * first water tile)
 	 */
 	public void firstWaterSearch(boolean haveKey, boolean haveAxe) {
-		FCostSort fcs = new FCostSort();
-		PriorityQueue<Point2D.Double> openSet = new PriorityQueue<>(10, fcs);
-		Set<Point2D.Double> closedSet = new HashSet<>();
-		for (int y = WorldModel.MAX_MAP_Y; y >= -WorldModel.MAX_MAP_Y; y--) {
-			for (int x = -WorldModel.MAX_MAP_X; x <= WorldModel.MAX_MAP_X; x++) {
-				gCost.put(new Point2D.Double(x, y), INFINITY);
-				fCost.put(new Point2D.Double(x, y), INFINITY);
-			}
-		}
-		gCost.put(startPoint, 0);
-		fCost.put(startPoint, ManhattanDistanceHeuristic(startPoint, endPoint));
-		openSet.add(startPoint);
-		while (!openSet.isEmpty()) {
-			Point2D.Double currentTile = openSet.remove();
-			if (currentTile.equals(endPoint)) {
-				return;
-			}
-			openSet.remove(currentTile);
-			closedSet.add(currentTile);
-			for (int p = 0; p < 4; p++) {
-				int nextX = (int) currentTile.getX();
-				int nextY = (int) currentTile.getY();
-				switch (p) {
-				case 0:
-					nextX += 1;
-					break; // Tile East
-				case 1:
-					nextX -= 1;
-					break; // Tile West
-				case 2:
-					nextY += 1;
-					break; // Tile North
-				case 3:
-					nextY -= 1;
-					break; // Tile South
-				}
-				Point2D.Double nextPoint = new Point2D.Double(nextX, nextY);
-				char tile = agentMap.get(nextPoint);
-				if (!WorldModel.tilePassWithItem(tile, haveKey, haveAxe, 0, true, false)) {
-					continue; // Tile can't be passed
-				}
-				if (closedSet.contains(nextPoint))
-					continue;
-				int nextPoint_gCost = gCost.get(currentTile) + 1;
-				if (nextPoint_gCost >= gCost.get(nextPoint))
-					continue;
-				successPath.put(nextPoint, currentTile);
-				gCost.put(nextPoint, nextPoint_gCost);
-				fCost.put(nextPoint, nextPoint_gCost + ManhattanDistanceHeuristic(nextPoint, endPoint));
-				if (!openSet.contains(nextPoint))
-					openSet.add(nextPoint);
-			}
-		}
+		search(CostModel.firstWater(haveKey, haveAxe));
 	}
 
 	/**
-	 * Performs an A* search on the agent Map environment from start to end
-	 * Point(2D) and fills the success path with points to move around map (This
-	 * is when agent wants to know if a raft is needed to reach a goal)
+	 * Performs an A* search (This is when agent wants to know if a raft is
+	 * needed to reach a goal)
 	 * 
 	 * @return integer of gcost < 0, if only need raft to reach goal
 	 */
 	public int callTheoreticalRaftSearch() {
-		successPath.clear();
-		FCostSort fcs = new FCostSort();
-		PriorityQueue<Point2D.Double> openSet = new PriorityQueue<>(10, fcs);
-		Set<Point2D.Double> closedSet = new HashSet<>();
-		for (int y = WorldModel.MAX_MAP_Y; y >= -WorldModel.MAX_MAP_Y; y--) {
-			for (int x = -WorldModel.MAX_MAP_X; x <= WorldModel.MAX_MAP_X; x++) {
-				gCost.put(new Point2D.Double(x, y), INFINITY);
-				fCost.put(new Point2D.Double(x, y), INFINITY);
-			}
-		}
-		gCost.put(startPoint, 0);
-		fCost.put(startPoint, ManhattanDistanceHeuristic(startPoint, endPoint));
-		openSet.add(startPoint);
-		while (!openSet.isEmpty()) {
-			Point2D.Double currentTile = openSet.remove();
-			if (currentTile.equals(endPoint)) {
-				return (gCost.get(currentTile));
-			}
-			openSet.remove(currentTile); // Remove from open
-			closedSet.add(currentTile); // Mark as seen
-			for (int p = 0; p < 4; p++) {
-				int nextX = (int) currentTile.getX();
-				int nextY = (int) currentTile.getY();
-				switch (p) {
-				case 0:
-					nextX += 1;
-					break; // Tile East
-				case 1:
-					nextX -= 1;
-					break; // Tile West
-				case 2:
-					nextY += 1;
-					break; // Tile North
-				case 3:
-					nextY -= 1;
-					break; // Tile South
-				}
-				Point2D.Double nextPoint = new Point2D.Double(nextX, nextY);
-				// if (agentMap.get(nextPoint) == null) continue;
-				char tile = agentMap.get(nextPoint);
-				if (!WorldModel.tilePassWithItem(tile, false, false, 0, true, true)) {
-					continue;
-				}
-				if (closedSet.contains(nextPoint))
-					continue;
-				int nextPoint_gCost = gCost.get(currentTile);
-				if (tile == WorldModel.OBSTACLE_SPACE) {
-					nextPoint_gCost -= 0; // Make it free to use space
-				}
-				if (tile == WorldModel.OBSTACLE_TREE) {
-					nextPoint_gCost += 160; // Make it bit more expensive to go
-											// through trees
-				}
-				if (tile == WorldModel.OBSTACLE_WATER) {
-					nextPoint_gCost -= 0;
-				}
-				if (tile == WorldModel.OBSTACLE_WALL) {
-					nextPoint_gCost += 160; // Make it cost lots to use dynamite
-				}
-				// g(new) > g(old), skip
-				if (nextPoint_gCost >= gCost.get(nextPoint))
-					continue;
-				// Else, this path is lowest cost so far, put in path
-				successPath.put(nextPoint, currentTile);
-				gCost.put(nextPoint, nextPoint_gCost);
-				fCost.put(nextPoint, nextPoint_gCost + ManhattanDistanceHeuristic(nextPoint, endPoint));
-				// If not on open add, so explore later
-				if (!openSet.contains(nextPoint))
-					openSet.add(nextPoint);
-			}
-		}
-		return 0;
+		int goalCost = search(CostModel.theoreticalRaft());
+		return (goalCost == INFINITY) ? 0 : goalCost;
 	}
 
 	/**
-	 * Performs an A* search on the agent Map environment from start to end
-	 * Point(2D) and fills the success path with points to move around map (This
-	 * is when agent wants to know if dynamites is needed to reach a goal)
+	 * Performs an A* search (This is when agent wants to know if dynamites is
+	 * needed to reach a goal)
 	 * 
 	 * @return integer of gcost < 0, if only gain by dynamites by reaching goal
 	 */
 	public int callTheoreticalDynaSearch() {
-		FCostSort fcs = new FCostSort();
-		PriorityQueue<Point2D.Double> openSet = new PriorityQueue<>(10, fcs);
-		Set<Point2D.Double> closedSet = new HashSet<>();
-		for (int y = WorldModel.MAX_MAP_Y; y >= -WorldModel.MAX_MAP_Y; y--) {
-			for (int x = -WorldModel.MAX_MAP_X; x <= WorldModel.MAX_MAP_X; x++) {
-				gCost.put(new Point2D.Double(x, y), INFINITY);
-				fCost.put(new Point2D.Double(x, y), INFINITY);
-			}
-		}
-		gCost.put(startPoint, 0);
-		fCost.put(startPoint, ManhattanDistanceHeuristic(startPoint, endPoint));
-		openSet.add(startPoint);
-		while (!openSet.isEmpty()) {
-			Point2D.Double currentTile = openSet.remove();
-			if (currentTile.equals(endPoint)) {
-				return (gCost.get(currentTile));
-			}
-			openSet.remove(currentTile); // Remove from open
-			closedSet.add(currentTile); // Mark as seen
-			for (int p = 0; p < 4; p++) {
-				int nextX = (int) currentTile.getX();
-				int nextY = (int) currentTile.getY();
-				switch (p) {
-				case 0:
-					nextX += 1;
-					break; // Tile East
-				case 1:
-					nextX -= 1;
-					break; // Tile West
-				case 2:
-					nextY += 1;
-					break; // Tile North
-				case 3:
-					nextY -= 1;
-					break; // Tile South
-				}
-				Point2D.Double nextPoint = new Point2D.Double(nextX, nextY);
-				char tile = agentMap.get(nextPoint);
-				if (!WorldModel.tilePassDynamite(tile, true, true, 1, true, true)) {
-					continue; // Tile can't be passed
-				}
-				if (closedSet.contains(nextPoint))
-					continue;
-				int nextPoint_gCost = gCost.get(currentTile);
-				if (tile == WorldModel.OBSTACLE_SPACE) {
-					nextPoint_gCost -= 0; // Make it free to use space
-				}
-				if (tile == WorldModel.OBSTACLE_WALL) {
-					nextPoint_gCost += 160; // Make it cost lots to use dynamite
-				}
-				if (tile == WorldModel.TOOL_DYNAMITE) {
-					nextPoint_gCost -= 160; // Make it Beneficial to get the
-											// dynamite
-				}
-				if (tile == WorldModel.OBSTACLE_TREE) {
-					nextPoint_gCost += 160;
-				}
-				if (tile == WorldModel.OBSTACLE_WATER) {
-					nextPoint_gCost += 320; // Make going path using water more
-											// expensive
-				}
-				// g(new) > g(old), skip
-				if (nextPoint_gCost >= gCost.get(nextPoint))
-					continue;
-				// Else, this path is lowest cost so far, put in path
-				successPath.put(nextPoint, currentTile);
-				gCost.put(nextPoint, nextPoint_gCost);
-				fCost.put(nextPoint, nextPoint_gCost + ManhattanDistanceHeuristic(nextPoint, endPoint));
-				// If not on open add, so explore later
-				if (!openSet.contains(nextPoint))
-					openSet.add(nextPoint);
-			}
-		}
-		return 0;
+		int goalCost = search(CostModel.theoreticalDyna());
+		return (goalCost == INFINITY) ? 0 : goalCost;
+	}
+
+	/**
+	 * Counts an expanded tile into stats, if it is set
+	 */
+	private void expand() {
+		if (stats != null)
+			stats.expand();
+	}
+
+	/**
+	 * Counts the search into stats, if it is set
+	 * 
+	 * @param started
+	 *            System.nanoTime() the search started at
+	 * @param goalCost
+	 *            cost the search returns
+	 * @return goalCost
+	 */
+	private int finish(long started, int goalCost) {
+		if (stats != null)
+			stats.finish(successPath.length, started);
+		return goalCost;
 	}
 
 	/**
-	 * Computes the Manhattan distance for start and end point, this is an
-	 * admissible heuristic
+	 * Computes the heuristic for start and end point, the Manhattan distance
+	 * unless another was set, this is an admissible heuristic
 	 * 
 	 * @param startPoint
 	 *            the starting point
 	 * @param endPoint
 	 *            the ending point
-	 * @return integer of Manhattan distance from start to end point
+	 * @return integer of estimated cost from start to end point
 	 */
-	private int ManhattanDistanceHeuristic(Point2D.Double startPoint, Point2D.Double endPoint) {
-		int absX = Math.abs((int) startPoint.getX() - (int) endPoint.getX());
-		int absY = Math.abs((int) startPoint.getY() - (int) endPoint.getY());
-		return (absX + absY);
+	private int heuristic(int startPoint, int endPoint) {
+		return heuristic.estimate(startPoint, endPoint);
 	}
 
 	/**
 	 * Returns minimum path from start to goal as determined in search() or
-	 * empty linked list if no path was found.
+	 * empty array if no path was found.
 	 * 
 	 * @Pre above searches are called before calling this method
-	 * @return LinkedList of Point2D that form a path start to goal (backwards)
-	 *         without start, else null
+	 * @return array of packed coordinates that form a path start to goal in
+	 *         travel order without start, else empty
 	 */
-	public LinkedList<Point2D.Double> getSuccessPath() {
-		LinkedList<Point2D.Double> copyPath = new LinkedList<>();
-		Point2D.Double currPoint = endPoint;
-		while (successPath.get(currPoint) != null) {
-			copyPath.add(currPoint);
-			currPoint = successPath.get(currPoint);
-		}
-		return copyPath;
+	public int[] getSuccessPath() {
+		return successPath;
 	}
 
 	/**
-	 * Comparison method in the java utility Points with lower f Costs come
-	 * earlier (higher priority given)
+	 * @return how many times the optimal cost the last anytime search's path
+	 *         can cost at most, 1 for every other search
 	 */
-	private class FCostSort implements Comparator<Point2D.Double> {
-		@Override
-		public int compare(Point2D.Double pointOne, Point2D.Double pointTwo) {
-			return (fCost.get(pointOne) - fCost.get(pointTwo));
+	public double getBound() {
+		return bound;
+	}
+
+	/**
+	 * Follows parents back from the goal, copying the path out of the search
+	 * context before another search reuses it
+	 * 
+	 * @param context
+	 *            context the search ran in
+	 * @param goalIndex
+	 *            tile index of the goal
+	 * @return path start to goal in travel order without start
+	 */
+	private int[] tracePath(SearchContext context, int goalIndex) {
+		int length = 0;
+		for (int at = context.parent(goalIndex); at != Coord.NONE; at = context.parent(agentMap.index(at)))
+			length++;
+		int[] copyPath = new int[length];
+		int currPoint = context.pointAt(goalIndex);
+		for (int i = length - 1; i >= 0; i--) {
+			copyPath[i] = currPoint;
+			currPoint = context.parent(agentMap.index(currPoint));
 		}
+		return copyPath;
 	}
 }
@@ -9,10 +9,12 @@
  *  (manipulated to suit different costs of agent environment)					  *
  *  and seed fill to check if specific locations are reachable or not			  *
  *  Data Structures employed: 													  *
- *  - Hash map for storing the agent environment and perception					  *
- *  - Linked Lists for path storing, tool/obstacle storing                        *
- *  - Double Ended Queue for open states (State-Based Search)	    			  *   
- *  - Hash Set for closed states (State-Based Search)	                          *
+ *  - Flat tile array for storing the agent environment and perception			  *
+ *  - Packed int coordinates (Coord) for path storing, hashed location sets     *
+ *  (LocationIndex) for tool/obstacle storing                                    *
+ *  - Union-find island and water body labels (Islands)                        *
+ *  - Indexed binary heap with decrease-key for open states (IndexedHeap)      *
+ *  - Generation stamped cost/closed arrays reused per thread (SearchContext)  *
  *  Design decisions: Used different classes to try and represent a logical agent * 
  *  World Model Class - Stores knowledge base, and agent perceptions through a    *
  *  map,some logical inferences on agent moves and whether or not is it possible  *
@@ -23,6 +25,18 @@
  *  logical to reach a certain state (makes program bit slow because of this)     *
  *  Agent Explorer Class - Tries to expand the agent's perception/knowledge base  *
  *  through exploring the hidden environment					 *
+ *  Resource Search Class - A* over location and items held together, plans     *
+ *  trips that need the raft, dynamite, key or axe in one search                 *
+ *  Multi Target Search Class - One breadth first search out to many tools or  *
+ *  trees, stopping once the nearest few are reached                             *
+ *  Distance Field Class - Moves home from every known tile, repaired as views *
+ *  reveal tiles rather than searched again, and stepped down on the way home   *
+ *  Path Abstraction Class - Cluster entrances and the moves between them,    *
+ *  searched first for trips across the map (HPA*)                              *
+ *  Landmarks Class - Moves to home, the treasure and tools, a tighter A*     *
+ *  heuristic than Manhattan distance by the triangle inequality (ALT)          *
+ *  Search Stats Class - Expansions, open list use, path length and time of   *
+ *  the searches, added up per planner decision                                 *
 ***********************************************************************************/
 
 import java.util.*;
@@ -1,37 +1,49 @@
-import java.util.*;
-import java.awt.geom.Point2D;
-import java.awt.geom.Point2D.Double;
-
 /**
  * Representation of AgentExplorer class Contains methods to find points on the
- * map which will reveal hidden information Explores outwards in a 5x5 grid from
- * any given point
+ * map which will reveal hidden information Picks from the frontier kept by the
+ * world model (known points with an unseen point in their 5x5 grid), the
+ * frontier point first met spiralling out from the agent wins
  * 
  * @author  bennygmate
  */
 public class AgentExplorer {
-	private final Map<Point2D.Double, Character> agentMap;
-	private final Point2D.Double agentPoint;
-	// Points of 24 surrounding points from agent location
-	private static final List<Double> explorePoint = Arrays.asList(new Point2D.Double(-2, -2),
-			new Point2D.Double(-2, -1), new Point2D.Double(-2, 0), new Point2D.Double(-2, 1), new Point2D.Double(-2, 2),
-			new Point2D.Double(-1, -2), new Point2D.Double(-1, -1), new Point2D.Double(-1, 0),
-			new Point2D.Double(-1, 1), new Point2D.Double(-1, 2), new Point2D.Double(0, -2), new Point2D.Double(0, -1),
-			new Point2D.Double(0, 1), new Point2D.Double(0, 2), new Point2D.Double(1, -2), new Point2D.Double(1, -1),
-			new Point2D.Double(1, 0), new Point2D.Double(1, 1), new Point2D.Double(1, 2), new Point2D.Double(2, -2),
-			new Point2D.Double(2, -1), new Point2D.Double(2, 0), new Point2D.Double(2, 1), new Point2D.Double(2, 2));
+	private final TileMap agentMap;
+	private final LocationIndex frontier;
+	private final Islands islands;
+	private final int agentPoint;
+	// Counters the reach fills add to, null to not count
+	private SearchStats stats;
 
 	/**
-	 * Constructor
+	 * Constructor, frontier and islands are WorldModel's live ones, so the
+	 * explorer is used on the thread applying views and before the next one
 	 * 
 	 * @param agentMap
 	 *            contains agent perception
+	 * @param frontier
+	 *            known points with unseen points around them
+	 * @param islands
+	 *            island and water body labels, answer reach tests without a
+	 *            fill when no items are involved
 	 * @param agentPoint
 	 *            point to explore from
 	 */
-	public AgentExplorer(Map<Point2D.Double, Character> agentMap, Point2D.Double agentPoint) {
+	public AgentExplorer(TileMap agentMap, LocationIndex frontier, Islands islands, int agentPoint) {
 		this.agentMap = agentMap;
+		this.frontier = frontier;
+		this.islands = islands;
 		this.agentPoint = agentPoint;
+		this.stats = null;
+	}
+
+	/**
+	 * Sets counters for the reach fills done to pick a point to add to
+	 * 
+	 * @param stats
+	 *            counters to add to, null to not count
+	 */
+	public void setStats(SearchStats stats) {
+		this.stats = stats;
 	}
 
 	/**
@@ -46,47 +58,39 @@ public class AgentExplorer {
 	 *            agent has raft, can pass waters
 	 * @return agentPoint, if no point found, else there is unknown points
 	 */
-	public Point2D.Double getFreeTile(boolean haveKey, boolean haveAxe, boolean haveRaft) {
-		// Begin generating points based on current location and spiral out
-		int x = 0;
-		int y = 0;
-		int tmpX = 0;
-		int tmpY = -1;
-		int maxX = WorldModel.MAX_MAP_X;
-		int maxY = WorldModel.MAX_MAP_Y;
-		int maxTile = WorldModel.MAX_MAP_X * WorldModel.MAX_MAP_Y;
-		int agentX = (int) agentPoint.getX();
-		int agentY = (int) agentPoint.getY();
-
-		for (int tileCount = 0; tileCount <= maxTile;) {
-			if ((x == maxX) || (y == maxY))
-				break;
-			// Update inspection point by offset to agent start point
-			Point2D.Double newPoint = new Point2D.Double(x + agentX, y + agentY);
-			if (agentMap.get(newPoint) != null) {
-				tileCount++;
-				char tileCheck = agentMap.get(newPoint);
-				if (WorldModel.tilePassWithItem(tileCheck, haveKey, haveAxe, 0, haveRaft, false)) {
-					if (unseenPoint(newPoint)) {
-						AgentReach ff = new AgentReach(agentMap, agentPoint, newPoint);
-						if (ff.reach(haveKey, haveAxe, 0, haveRaft, false)) {
-							if (!newPoint.equals(agentPoint))
-								return newPoint;
-						}
-					}
+	public int getFreeTile(boolean haveKey, boolean haveAxe, boolean haveRaft) {
+		int bestPoint = agentPoint;
+		long bestRank = Long.MAX_VALUE;
+		// Without items the islands answer, else one fill for every candidate,
+		// only done once there is a candidate
+		boolean onIsland = !haveKey && !haveAxe && !haveRaft
+				&& islands.terrain(agentPoint) == Islands.TERRAIN_LAND;
+		boolean[] reachable = null;
+		for (int newPoint : frontier.toArray()) {
+			if (newPoint == agentPoint)
+				continue;
+			char tileCheck = agentMap.get(newPoint);
+			if (!WorldModel.tilePassWithItem(tileCheck, haveKey, haveAxe, 0, haveRaft, false))
+				continue;
+			long rank = spiralRank(newPoint);
+			if (rank >= bestRank)
+				continue;
+			if (onIsland) {
+				if (!islands.landReach(agentPoint, newPoint))
+					continue;
+			} else {
+				if (reachable == null) {
+					AgentReach ff = new AgentReach(agentMap, agentPoint, Coord.NONE);
+					ff.setStats(stats);
+					reachable = ff.reachableTiles(haveKey, haveAxe, 0, haveRaft, false);
 				}
-
-			}
-			// Update tmpX, tmpY if checking straight line
-			if ((x == y) || ((x < 0) && (x == -y)) || ((x > 0) && (x == 1 - y))) {
-				int tmp = tmpX;
-				tmpX = -tmpY;
-				tmpY = tmp;
+				if (!reachable[agentMap.index(newPoint)])
+					continue;
 			}
-			x += tmpX;
-			y += tmpY;
+			bestPoint = newPoint;
+			bestRank = rank;
 		}
-		return agentPoint;
+		return bestPoint;
 	}
 
 	/**
@@ -95,70 +99,63 @@ public class AgentExplorer {
 	 * 
 	 * @return agentPoint, if no point found, else there is unknown points
 	 */
-	public Point2D.Double getWaterTile() {
-		// Begin generating points based on current location and spiral
-		int x = 0;
-		int y = 0;
-		int tmpX = 0;
-		int tmpY = -1;
-		int maxX = WorldModel.MAX_MAP_X;
-		int maxY = WorldModel.MAX_MAP_Y;
-		int maxTile = WorldModel.MAX_MAP_X * WorldModel.MAX_MAP_Y;
-		int agentX = (int) agentPoint.getX();
-		int agentY = (int) agentPoint.getY();
-		for (int tileCount = 0; tileCount <= maxTile;) {
-			if ((x == maxX) || (y == maxY))
-				break;
-			// Update inspection point by offset to agent start point
-			Point2D.Double newPoint = new Point2D.Double(x + agentX, y + agentY);
-			if (agentMap.get(newPoint) != null) {
-				tileCount++;
-				if (!newPoint.equals(agentPoint)) {
-					char tileCheck = agentMap.get(newPoint);
-					if (tileCheck == WorldModel.OBSTACLE_WATER) {
-						if (unseenPoint(newPoint)) {
-							AgentReach ff = new AgentReach(agentMap, agentPoint, newPoint);
-							if (ff.waterReach()) {
-								return newPoint;
-							}
-						}
-					}
+	public int getWaterTile() {
+		int bestPoint = agentPoint;
+		long bestRank = Long.MAX_VALUE;
+		// Islands know the water bodies around the agent
+		boolean fromAgent = islands.getAgentTile() == agentPoint;
+		boolean[] reachable = null;
+		for (int newPoint : frontier.toArray()) {
+			if (newPoint == agentPoint)
+				continue;
+			char tileCheck = agentMap.get(newPoint);
+			if (tileCheck != WorldModel.OBSTACLE_WATER)
+				continue;
+			long rank = spiralRank(newPoint);
+			if (rank >= bestRank)
+				continue;
+			if (fromAgent) {
+				if (!islands.waterReach(newPoint))
+					continue;
+			} else {
+				if (reachable == null) {
+					AgentReach ff = new AgentReach(agentMap, agentPoint, Coord.NONE);
+					ff.setStats(stats);
+					reachable = ff.waterReachableTiles();
 				}
-
-			}
-			if ((x == y) || ((x < 0) && (x == -y)) || ((x > 0) && (x == 1 - y))) {
-				int tmp = tmpX;
-				tmpX = -tmpY;
-				tmpY = tmp;
+				if (!reachable[agentMap.index(newPoint)])
+					continue;
 			}
-
-			x += tmpX;
-			y += tmpY;
+			bestPoint = newPoint;
+			bestRank = rank;
 		}
-		return agentPoint;
+		return bestPoint;
 	}
 
 	/**
-	 * Checks 24 surrounding points of the point passed in, if it is unseen
-	 * agent is curious and will want to look
+	 * Position of a point in the spiral out from the agent (east, then
+	 * anticlockwise a ring at a time), the spiral used to be walked tile by
+	 * tile to find the first point worth exploring
 	 * 
 	 * @param point
-	 *            the centre of point to check surrounding
-	 * @return true if any of the 24 surrounding points is unseen, false
-	 *         otherwise
+	 *            the point to rank
+	 * @return number of points before it in the spiral
 	 */
-	private boolean unseenPoint(Point2D.Double middlePoint) {
-		for (Object o : explorePoint) { // For every 24 points
-			Point2D.Double offset = (Point2D.Double) o;
-			Point2D.Double viewPoint = new Point2D.Double(middlePoint.getX() + offset.getX(),
-					middlePoint.getY() + offset.getY());
-			if (agentMap.get(viewPoint) != null) {
-				char viewPointTile = agentMap.get(viewPoint);
-				// point is not completely visible (unknown to agent view)
-				if (viewPointTile == WorldModel.OBSTACLE_UNSEEN)
-					return true;
-			}
-		}
-		return false;
+	private long spiralRank(int point) {
+		int x = Coord.x(point) - Coord.x(agentPoint);
+		int y = Coord.y(point) - Coord.y(agentPoint);
+		long ring = Math.max(Math.abs(x), Math.abs(y));
+		if (ring == 0)
+			return 0;
+		// Ring starts at (ring, 1 - ring), after all the inner rings
+		long ringStart = (2 * ring - 1) * (2 * ring - 1);
+		if (x == ring && y > -ring) // Up the east side
+			return ringStart + y + ring - 1;
+		if (y == ring) // Along the north side, heading west
+			return ringStart + 2 * ring + ring - 1 - x;
+		if (x == -ring) // Down the west side
+			return ringStart + 4 * ring + ring - 1 - y;
+		// Along the south side, heading east
+		return ringStart + 6 * ring + x + ring - 1;
 	}
 }
@@ -1,4 +1,3 @@
-import java.awt.geom.Point2D;
 import java.util.*;
 
 /**
@@ -11,20 +10,51 @@ import java.util.*;
  */
 public class AgentPlanner {
 	private WorldModel wm;
+	// Cluster entrances kept for trips across the map
+	private PathAbstraction abstraction;
+	// Moves to home, the treasure and tools, the heuristic of A* trips and
+	// the way home once the treasure is held
+	private Landmarks landmarks;
 	private Queue<Character> agentMoves;
 	private int dynasNeeded;
 	private boolean axeNeeded;
 	private boolean needRaft;
+	// Time one decision may take, searches that can stop early stop by then
+	final static long DECISION_BUDGET = 200 * 1000000L;
+	// What addPathMoves clears out of the way, each also clears the ones
+	// before it
+	private final static int CLEAR_NONE = 0;
+	private final static int CLEAR_GATES = 1; // Chop trees, unlock doors
+	private final static int CLEAR_WALLS = 2; // Blast walls
+	// System.nanoTime() the current decision has to be made by
+	private long deadline;
+	// Work of the searches of the last decision, and of every decision
+	private SearchStats decisionStats;
+	private SearchStats totalStats;
+	// Resource searches that found nothing on this map version, by start,
+	// via, end and items, with the deadline the answer holds until
+	private Map<List<Integer>, Long> resourceFailed;
+	private int resourceFailedVersion;
 
 	/**
 	 * Constructor
 	 */
 	public AgentPlanner() {
 		this.wm = new WorldModel();
+		this.abstraction = new PathAbstraction(wm);
+		this.landmarks = new Landmarks(wm);
+		this.landmarks.add(Coord.ORIGIN);
 		this.agentMoves = new LinkedList<>();
 		this.dynasNeeded = 0;
 		this.axeNeeded = false;
 		this.needRaft = false;
+		this.deadline = Long.MAX_VALUE;
+		this.decisionStats = new SearchStats();
+		this.totalStats = new SearchStats();
+		this.resourceFailed = new HashMap<>();
+		this.resourceFailedVersion = -1;
+		this.abstraction.setStats(decisionStats);
+		this.landmarks.setStats(decisionStats);
 	}
 
 	public char agentPerception(char view[][]) {
@@ -44,44 +74,73 @@ public class AgentPlanner {
 		return moveToMake;
 	}
 
+	/**
+	 * @return work done by the searches of the last decision, made when the
+	 *         move queue ran out (A*, HPA*, reach fills, exploring,
+	 *         tool and resource searches, distance field builds and repairs)
+	 */
+	public SearchStats getDecisionStats() {
+		return decisionStats;
+	}
+
+	/**
+	 * @return work done by the searches of every decision so far
+	 */
+	public SearchStats getTotalStats() {
+		return totalStats;
+	}
+
 	/**
 	 * This is the agent planner and feeds instructions This method adds a move
 	 * to agentMove queue, that is when agent has no action plan
 	 */
 	public void agentPlanner() {
+		deadline = System.nanoTime() + DECISION_BUDGET;
+		decisionStats.reset();
+		addLandmarks();
 		while (agentMoves.isEmpty()) {
 			// Priority 1: Have treasure do A* traversal to starting location
 			// (0,0)
 			if (wm.holdTreas()) {
-				AgentReach ar = new AgentReach(wm.getMap(), wm.getAgentLoc(), new Point2D.Double(0, 0));
-				if (ar.reach(wm.holdKey(), wm.holdAxe(), wm.getNumDyna(), wm.holdRaft(), wm.usingRaft())) {
+				int passClasses = WorldModel.passClasses(wm.holdKey(), wm.holdAxe(), wm.getNumDyna(), wm.holdRaft(),
+						wm.usingRaft());
+				if (landmarks.field(Coord.ORIGIN, passClasses).reaches(wm.getAgentLoc(), passClasses)) {
 					// Just go home
-					makePathAStar(wm.getAgentLoc(), new Point2D.Double(0, 0), wm.getDir(), wm.holdKey(), wm.holdAxe(),
-							wm.getNumDyna(), wm.holdRaft(), wm.usingRaft());
+					makeHomeStep(wm.getAgentLoc(), wm.getDir(), wm.holdKey(), wm.holdAxe(), wm.getNumDyna(),
+							wm.holdRaft(), wm.usingRaft());
 					break;
 				} else {
+					// Way home using items, following the game rules exactly
+					if (makeResourcePathAStar(wm.getAgentLoc(), Coord.NONE, Coord.ORIGIN, wm.getDir())) {
+						break;
+					}
 					// Chop tree to get raft back, or use dynamite to blast home
 					if (getRaftUsingAxe(wm.getAgentLoc()) == true) {
 						pathToGetRaft();
 						break;
 					}
 					if (wm.getNumDyna() > 0) {
-						if (theoreticalRaftPathAStar(wm.getAgentLoc(), new Point2D.Double(0, 0), wm.getDir())) {
+						if (theoreticalRaftPathAStar(wm.getAgentLoc(), Coord.ORIGIN, wm.getDir())) {
 							break;
 						}
-						makeDynaPathAStar(wm.getTreasLoc(), new Point2D.Double(0, 0), wm.getDir(), wm.holdKey(),
+						makeDynaPathAStar(wm.getTreasLoc(), Coord.ORIGIN, wm.getDir(), wm.holdKey(),
 								wm.holdAxe(), wm.getNumDyna(), wm.holdRaft(), wm.usingRaft());
 					}
 				}
 			}
 			// Priority 2: Can see treasure
 			if (wm.isTreasVisible()) {
+				// Plan to the treasure and back home in one go, if there is one
+				// with what is known so far the searches below aren't needed
+				if (makeResourcePathAStar(wm.getAgentLoc(), wm.getTreasLoc(), Coord.ORIGIN, wm.getDir())) {
+					break;
+				}
 				theoreticalDynaPathCounter(wm.getAgentLoc(), wm.getTreasLoc(), wm.getDir());
 				theoreticalRaftPathCounter(wm.getAgentLoc(), wm.getTreasLoc(), wm.getDir());
 				// Simply grab treasure, if don't need raft or dynamite or axe
 				if (!needRaft && dynasNeeded == 0 && !axeNeeded) {
-					makePathAStar(wm.getAgentLoc(), wm.getTreasLoc(), wm.getDir(), wm.holdKey(), wm.holdAxe(), 0, false,
-							false);
+					makeLongPathAStar(wm.getAgentLoc(), wm.getTreasLoc(), wm.getDir(), wm.holdKey(), wm.holdAxe(), 0,
+							false, false);
 				}
 				// If this is the case we can just BLAST THROUGH
 				if (dynasNeeded <= wm.getNumDyna() && !axeNeeded && !needRaft) {
@@ -154,7 +213,7 @@ public class AgentPlanner {
 				// get it at this point
 				boolean toolObtained = false;
 				if (!wm.holdKey() && !wm.getKeyLocs().isEmpty()) {
-					for (Point2D.Double KeyLoc : wm.getAxeLocs()) {
+					for (int KeyLoc : wm.getAxeLocs().toArray()) {
 						if (theoreticalDynaPathAStar(wm.getAgentLoc(), KeyLoc, wm.getDir())) {
 							toolObtained = true;
 							break;
@@ -164,7 +223,7 @@ public class AgentPlanner {
 				if (toolObtained)
 					break;
 				if (axeNeeded && !wm.holdAxe() && !wm.getAxeLocs().isEmpty()) {
-					for (Point2D.Double axeLoc : wm.getAxeLocs()) {
+					for (int axeLoc : wm.getAxeLocs().toArray()) {
 						if (theoreticalDynaPathAStar(wm.getAgentLoc(), axeLoc, wm.getDir())) {
 							toolObtained = true;
 							break;
@@ -215,6 +274,27 @@ public class AgentPlanner {
 			}
 
 		}
+		totalStats.add(decisionStats);
+	}
+
+	/**
+	 * @return explorer from the agent's location, counting into the
+	 *         decision's stats
+	 */
+	private AgentExplorer newExplorer() {
+		AgentExplorer ae = new AgentExplorer(wm.getMap(), wm.getFrontier(), wm.getIslands(), wm.getAgentLoc());
+		ae.setStats(decisionStats);
+		return ae;
+	}
+
+	/**
+	 * @return A* search on the agent map from startLoc to endLoc, counting
+	 *         into the decision's stats
+	 */
+	private AStar newAStar(int startLoc, int endLoc) {
+		AStar a = new AStar(wm.getMap(), startLoc, endLoc);
+		a.setStats(decisionStats);
+		return a;
 	}
 
 	/**
@@ -224,9 +304,9 @@ public class AgentPlanner {
 	 *         map, false is not
 	 */
 	private boolean exploreSpace() {
-		AgentExplorer ae = new AgentExplorer(wm.getMap(), wm.getAgentLoc());
-		Point2D.Double exploreFree = ae.getFreeTile(false, false, false);
-		if (!exploreFree.equals(wm.getAgentLoc())) {
+		AgentExplorer ae = newExplorer();
+		int exploreFree = ae.getFreeTile(false, false, false);
+		if (exploreFree != wm.getAgentLoc()) {
 			makePathAStar(wm.getAgentLoc(), exploreFree, wm.getDir(), wm.holdKey(), false, 0, false, false);
 			return true;
 		} else {
@@ -242,9 +322,9 @@ public class AgentPlanner {
 	 *         about the map, false is not
 	 */
 	private boolean exploreTree() {
-		AgentExplorer ae = new AgentExplorer(wm.getMap(), wm.getAgentLoc());
-		Point2D.Double exploreCut = ae.getFreeTile(wm.holdKey(), true, false);
-		if (!exploreCut.equals(wm.getAgentLoc())) {
+		AgentExplorer ae = newExplorer();
+		int exploreCut = ae.getFreeTile(wm.holdKey(), true, false);
+		if (exploreCut != wm.getAgentLoc()) {
 			makePathAStar(wm.getAgentLoc(), exploreCut, wm.getDir(), wm.holdKey(), true, 0, false, false);
 			return true;
 		} else {
@@ -260,9 +340,9 @@ public class AgentPlanner {
 	 * @return true if exploring the first water point reveals more information
 	 */
 	private boolean exploreAnotherWater() {
-		AgentExplorer ae = new AgentExplorer(wm.getMap(), wm.getAgentLoc());
-		Point2D.Double exploreAnotherWater = ae.getFreeTile(wm.holdKey(), false, true);
-		if (!exploreAnotherWater.equals(wm.getAgentLoc())) {
+		AgentExplorer ae = newExplorer();
+		int exploreAnotherWater = ae.getFreeTile(wm.holdKey(), false, true);
+		if (exploreAnotherWater != wm.getAgentLoc()) {
 			makeFirstWaterPathAStar(wm.getAgentLoc(), exploreAnotherWater, wm.getDir(), wm.holdKey(), false);
 			return true;
 		} else {
@@ -278,9 +358,9 @@ public class AgentPlanner {
 	 * @return true if going to the water point reveals more information
 	 */
 	private boolean exploreWaters() {
-		AgentExplorer ae = new AgentExplorer(wm.getMap(), wm.getAgentLoc());
-		Point2D.Double exploreWater = ae.getWaterTile();
-		if (!exploreWater.equals(wm.getAgentLoc())) {
+		AgentExplorer ae = newExplorer();
+		int exploreWater = ae.getWaterTile();
+		if (exploreWater != wm.getAgentLoc()) {
 			makeWaterPathAStar(wm.getAgentLoc(), exploreWater, wm.getDir());
 			return true;
 		} else {
@@ -296,9 +376,9 @@ public class AgentPlanner {
 	 * @return true if the going to another island will reveal more information
 	 */
 	private boolean exploreAnotherIsland() {
-		AgentExplorer ae = new AgentExplorer(wm.getMap(), wm.getAgentLoc());
-		Point2D.Double exploreBackLand = ae.getFreeTile(wm.holdKey(), wm.holdAxe(), true);
-		if (!exploreBackLand.equals(wm.getAgentLoc())) {
+		AgentExplorer ae = newExplorer();
+		int exploreBackLand = ae.getFreeTile(wm.holdKey(), wm.holdAxe(), true);
+		if (exploreBackLand != wm.getAgentLoc()) {
 			makeBackIslandPathAStar(wm.getAgentLoc(), exploreBackLand, wm.getDir(), wm.holdKey(), true);
 			return true;
 		} else {
@@ -316,15 +396,19 @@ public class AgentPlanner {
 	 */
 	private boolean getFreeTools() {
 		if (!wm.holdKey() && !wm.getKeyLocs().isEmpty()) {
-			for (Point2D.Double keyLoc : wm.getKeyLocs()) {
-				AgentReach ar = new AgentReach(wm.getMap(), wm.getAgentLoc(), keyLoc);
-				if (ar.reach(false, false, 0, false, false)) {
+			// One search each way for every key, still tried in list order
+			int[] keyLocs = wm.getKeyLocs().toArray();
+			int[] onFoot = reachTargets(wm.getAgentLoc(), keyLocs, keyLocs.length, false, false, 0, false, false);
+			int[] onRaft = reachTargets(wm.getAgentLoc(), keyLocs, keyLocs.length, false, false, 0, false, true);
+			for (int i = 0; i < keyLocs.length; i++) {
+				int keyLoc = keyLocs[i];
+				if (onFoot[i] != MultiTargetSearch.INFINITY) {
 					if (!wm.usingRaft()) {
 						makePathAStar(wm.getAgentLoc(), keyLoc, wm.getDir(), false, false, 0, false, false);
 						return true;
 					}
 				}
-				if (ar.reach(false, false, 0, false, true)) {
+				if (onRaft[i] != MultiTargetSearch.INFINITY) {
 					if (wm.usingRaft() && getRaftBackAfterTool(keyLoc)) {
 						makePathAStar(wm.getAgentLoc(), keyLoc, wm.getDir(), false, false, 0, false, true);
 						return true;
@@ -333,15 +417,18 @@ public class AgentPlanner {
 			}
 		}
 		if (!wm.holdAxe() && !wm.getAxeLocs().isEmpty()) {
-			for (Point2D.Double axeLoc : wm.getAxeLocs()) {
-				AgentReach ar = new AgentReach(wm.getMap(), wm.getAgentLoc(), axeLoc);
-				if (ar.reach(wm.holdKey(), false, 0, false, false)) {
+			int[] axeLocs = wm.getAxeLocs().toArray();
+			int[] onFoot = reachTargets(wm.getAgentLoc(), axeLocs, axeLocs.length, wm.holdKey(), false, 0, false, false);
+			int[] onRaft = reachTargets(wm.getAgentLoc(), axeLocs, axeLocs.length, wm.holdKey(), false, 0, false, true);
+			for (int i = 0; i < axeLocs.length; i++) {
+				int axeLoc = axeLocs[i];
+				if (onFoot[i] != MultiTargetSearch.INFINITY) {
 					if (!wm.usingRaft()) {
 						makePathAStar(wm.getAgentLoc(), axeLoc, wm.getDir(), wm.holdKey(), false, 0, false, false);
 						return true;
 					}
 				}
-				if (ar.reach(wm.holdKey(), false, 0, false, true)) {
+				if (onRaft[i] != MultiTargetSearch.INFINITY) {
 					if (wm.usingRaft() && getRaftBackAfterTool(axeLoc)) {
 						makePathAStar(wm.getAgentLoc(), axeLoc, wm.getDir(), wm.holdKey(), false, 0, false, true);
 						return true;
@@ -350,10 +437,13 @@ public class AgentPlanner {
 			}
 		}
 		if (!wm.getDynaLocs().isEmpty()) {
-			for (Point2D.Double dynaLoc : wm.getDynaLocs()) {
-				AgentReach ar = new AgentReach(wm.getMap(), wm.getAgentLoc(), dynaLoc);
+			int[] dynaLocs = wm.getDynaLocs().toArray();
+			int[] onFoot = reachTargets(wm.getAgentLoc(), dynaLocs, dynaLocs.length, wm.holdKey(), false, 0, false, false);
+			int[] onRaft = reachTargets(wm.getAgentLoc(), dynaLocs, dynaLocs.length, wm.holdKey(), false, 0, false, true);
+			for (int i = 0; i < dynaLocs.length; i++) {
+				int dynaLoc = dynaLocs[i];
 				if (!wm.usingRaft()) {
-					if (ar.reach(wm.holdKey(), false, 0, false, false)) {
+					if (onFoot[i] != MultiTargetSearch.INFINITY) {
 						makePathAStar(wm.getAgentLoc(), dynaLoc, wm.getDir(), wm.holdKey(), false, 0, false, false);
 						return true;
 					}
@@ -371,7 +461,7 @@ public class AgentPlanner {
 
 				}
 				if (wm.usingRaft()) {
-					if (ar.reach(wm.holdKey(), false, 0, false, true)) {
+					if (onRaft[i] != MultiTargetSearch.INFINITY) {
 						if (getRaftBackAfterTool(dynaLoc)) {
 							makeBackIslandPathAStar(wm.getAgentLoc(), dynaLoc, wm.getDir(), wm.holdKey(), wm.holdAxe());
 							return true;
@@ -395,17 +485,14 @@ public class AgentPlanner {
 	 * 
 	 * @Pre Agent has axe
 	 * @param fromLoc
-	 *            Point2D to check whether the visible map has trees nearby
+	 *            location to check whether the visible map has trees nearby
 	 * @return true if agent can get raft using an axe from the location
 	 */
-	private boolean getRaftUsingAxe(Point2D.Double fromLoc) {
+	private boolean getRaftUsingAxe(int fromLoc) {
 		if (!wm.getTreeLocs().isEmpty()) {
-			for (Point2D.Double treeLoc : wm.getTreeLocs()) {
-				AgentReach nr = new AgentReach(wm.getMap(), fromLoc, treeLoc);
-				if (nr.reach(wm.holdKey(), wm.holdAxe(), wm.getNumDyna(), wm.holdRaft(), wm.usingRaft())) {
-					return true;
-				}
-			}
+			// Stops at the first tree reached
+			return countReachable(fromLoc, wm.getTreeLocs().toArray(), 1, wm.holdKey(), wm.holdAxe(),
+					wm.getNumDyna(), wm.holdRaft(), wm.usingRaft()) > 0;
 		}
 		return false;
 	}
@@ -415,48 +502,30 @@ public class AgentPlanner {
 	 * 
 	 * @Pre Agent has axe
 	 * @param fromLoc
-	 *            Point2D to check whether the visible map has trees nearby
+	 *            location to check whether the visible map has trees nearby
 	 * @param safeToChop
 	 *            amount of trees deemed appropriate so that can chop to explore
 	 *            more
 	 * @return true there are enough trees near the location that are safe to
 	 *         chop
 	 */
-	private boolean chopTreesUsingAxe(Point2D.Double fromLoc, int safeToChop) {
-		int counter = 0;
-		int fromX = (int) fromLoc.getX();
-		int fromY = (int) fromLoc.getY();
-		if (!wm.getTreeLocs().isEmpty()) {
-			for (Point2D.Double treeLoc : wm.getTreeLocs()) {
-				int xDiff = Math.abs((int) treeLoc.getX() - fromX);
-				int yDiff = Math.abs((int) treeLoc.getY() - fromY);
-				if (xDiff > 10 || yDiff > 10)
-					continue;
-				AgentReach nr = new AgentReach(wm.getMap(), fromLoc, treeLoc);
-				if (nr.reach(wm.holdKey(), wm.holdAxe(), wm.getNumDyna(), wm.holdRaft(), wm.usingRaft())) {
-					counter++;
-					if (counter == safeToChop) {
-						return true;
-					}
-				}
-			}
-		}
-		if (!wm.getTreeLocs().isEmpty()) {
-			for (Point2D.Double treeLoc : wm.getTreeLocs()) {
-				int xDiff = Math.abs((int) treeLoc.getX() - fromX);
-				int yDiff = Math.abs((int) treeLoc.getY() - fromY);
-				if (xDiff <= 10 || yDiff <= 10)
-					continue;
-				AgentReach nr = new AgentReach(wm.getMap(), fromLoc, treeLoc);
-				if (nr.reach(wm.holdKey(), wm.holdAxe(), wm.getNumDyna(), wm.holdRaft(), wm.usingRaft())) {
-					counter++;
-					if (counter == safeToChop) {
-						return true;
-					}
-				}
-			}
+	private boolean chopTreesUsingAxe(int fromLoc, int safeToChop) {
+		if (safeToChop <= 0 || wm.getTreeLocs().isEmpty())
+			return false;
+		int fromX = Coord.x(fromLoc);
+		int fromY = Coord.y(fromLoc);
+		// Trees within 10 both ways, or further than 10 both ways
+		int[] treeLocs = wm.getTreeLocs().toArray();
+		int numTrees = 0;
+		for (int treeLoc : treeLocs) {
+			int xDiff = Math.abs(Coord.x(treeLoc) - fromX);
+			int yDiff = Math.abs(Coord.y(treeLoc) - fromY);
+			if ((xDiff <= 10 && yDiff <= 10) || (xDiff > 10 && yDiff > 10))
+				treeLocs[numTrees++] = treeLoc;
 		}
-		return false;
+		// Stops as soon as enough trees are reached
+		return countReachable(fromLoc, Arrays.copyOf(treeLocs, numTrees), safeToChop, wm.holdKey(), wm.holdAxe(),
+				wm.getNumDyna(), wm.holdRaft(), wm.usingRaft()) >= safeToChop;
 	}
 
 	/**
@@ -465,15 +534,23 @@ public class AgentPlanner {
 	 * @Pre There has to be a reachable tree nearby
 	 */
 	private void pathToGetRaft() {
-		if (!wm.getTreeLocs().isEmpty()) {
-			for (Point2D.Double treeLoc : wm.getTreeLocs()) {
-				AgentReach nr = new AgentReach(wm.getMap(), wm.getAgentLoc(), treeLoc);
-				if (nr.reach(wm.holdKey(), wm.holdAxe(), 0, false, false)) {
-					makePathAStar(wm.getAgentLoc(), treeLoc, wm.getDir(), wm.holdKey(), wm.holdAxe(), 0, false, false);
-					return;
-				}
-			}
+		// Nearest tree first, so the raft costs as few moves as possible. One
+		// search finds every reachable tree and the path to each, the straight
+		// line pick among them is kept as picking by moves makes s4 longer
+		TileMap map = wm.getMap();
+		int[] treeLocs = wm.getTreeLocs().toArray();
+		MultiTargetSearch ms = new MultiTargetSearch(map, wm.getAgentLoc());
+		ms.setStats(decisionStats);
+		int[] moves = ms.search(WorldModel.passClasses(wm.holdKey(), wm.holdAxe(), 0, false, false), treeLocs,
+				treeLocs.length);
+		boolean[] reachable = new boolean[map.size()];
+		for (int i = 0; i < treeLocs.length; i++) {
+			if (moves[i] != MultiTargetSearch.INFINITY)
+				reachable[map.index(treeLocs[i])] = true;
 		}
+		int treeLoc = wm.getTreeLocs().nearest(wm.getAgentLoc(), tree -> reachable[map.index(tree)]);
+		if (treeLoc != Coord.NONE)
+			addPathMoves(wm.getAgentLoc(), wm.getDir(), ms.getPath(treeLoc));
 	}
 
 	/**
@@ -485,18 +562,59 @@ public class AgentPlanner {
 	 * @return true if there is a tree reachable for free near the tool
 	 *         location, false otherwise
 	 */
-	private boolean getRaftBackAfterTool(Point2D.Double toolLoc) {
+	private boolean getRaftBackAfterTool(int toolLoc) {
 		if (!wm.getTreeLocs().isEmpty()) {
-			for (Point2D.Double treeLoc : wm.getTreeLocs()) {
-				AgentReach nr = new AgentReach(wm.getMap(), toolLoc, treeLoc);
-				if (nr.reach(wm.holdKey(), wm.holdAxe(), 0, false, false)) {
-					return true;
-				}
-			}
+			return countReachable(toolLoc, wm.getTreeLocs().toArray(), 1, wm.holdKey(), wm.holdAxe(), 0, false,
+					false) > 0;
 		}
 		return false;
 	}
 
+	/**
+	 * Reach tests from fromLoc to many targets with one search, see
+	 * MultiTargetSearch
+	 * 
+	 * @param fromLoc
+	 *            location to search from
+	 * @param targets
+	 *            locations to test
+	 * @param k
+	 *            stop once this many of the nearest targets are reached
+	 * @param hasKey
+	 *            if the agent holds a key
+	 * @param hasAxe
+	 *            if the agent holds an axe
+	 * @param numDyna
+	 *            if the agent has any dynamites
+	 * @param haveRaft
+	 *            if the agent has a raft
+	 * @param usingRaft
+	 *            if the agent is already using raft
+	 * @return moves to each target in targets order,
+	 *         MultiTargetSearch.INFINITY if not reached
+	 */
+	private int[] reachTargets(int fromLoc, int[] targets, int k, boolean hasKey, boolean hasAxe, int numDyna,
+			boolean haveRaft, boolean usingRaft) {
+		MultiTargetSearch ms = new MultiTargetSearch(wm.getMap(), fromLoc);
+		ms.setStats(decisionStats);
+		return ms.search(WorldModel.passClasses(hasKey, hasAxe, numDyna, haveRaft, usingRaft), targets, k);
+	}
+
+	/**
+	 * Same as reachTargets, counting the targets reached
+	 * 
+	 * @return number of targets reached, at most k
+	 */
+	private int countReachable(int fromLoc, int[] targets, int k, boolean hasKey, boolean hasAxe, int numDyna,
+			boolean haveRaft, boolean usingRaft) {
+		int count = 0;
+		for (int distance : reachTargets(fromLoc, targets, k, hasKey, hasAxe, numDyna, haveRaft, usingRaft)) {
+			if (distance != MultiTargetSearch.INFINITY)
+				count++;
+		}
+		return count;
+	}
+
 	/**
 	 * Performs an A* search on agent map from startLoc to endLoc location given
 	 * agent direction and tools held Obtains path and creates a list of moves
@@ -520,24 +638,229 @@ public class AgentPlanner {
 	 * @param usingRaft
 	 *            if the agent is already using raft
 	 */
-	private void makePathAStar(Point2D.Double startLoc, Point2D.Double endLoc, int curDirection, boolean hasKey,
+	private void makePathAStar(int startLoc, int endLoc, int curDirection, boolean hasKey,
 			boolean hasAxe, int numDyna, boolean haveRaft, boolean usingRaft) {
 		// New AStar search
-		AStar a = new AStar(wm.getMap(), startLoc, endLoc);
-		a.callSearch(hasKey, hasAxe, numDyna, haveRaft, usingRaft);
+		AStar a = newAStar(startLoc, endLoc);
+		a.setHeuristic(landmarks.forPassClasses(WorldModel.passClasses(hasKey, hasAxe, numDyna, haveRaft, usingRaft)));
+		a.callAnytimeSearch(hasKey, hasAxe, numDyna, haveRaft, usingRaft, deadline);
 		// Get optimal path
-		LinkedList<Point2D.Double> path = a.getSuccessPath();
-		// add startLocing position to end of path (before reversal)
-		path.addLast(startLoc);
+		addPathMoves(startLoc, curDirection, a.getSuccessPath());
+	}
+
+	/**
+	 * Same as makePathAStar, for trips across the map (home or to the
+	 * treasure). Ends clusters apart are searched over the cluster entrances
+	 * (PathAbstraction), nearer ones from both ends
+	 * 
+	 * @Pre endLoc can be reached already
+	 * @param startLoc
+	 *            the location of agent
+	 * @param endLoc
+	 *            the location of destination agent wants to reach
+	 * @param curDirection
+	 *            direction agent is facing
+	 * @param hasKey
+	 *            if the agent holds a key
+	 * @param hasAxe
+	 *            if the agent holds an axe
+	 * @param numDyna
+	 *            if the agent has any dynamites
+	 * @param haveRaft
+	 *            if the agent has a raft
+	 * @param usingRaft
+	 *            if the agent is already using raft
+	 */
+	private void makeLongPathAStar(int startLoc, int endLoc, int curDirection, boolean hasKey,
+			boolean hasAxe, int numDyna, boolean haveRaft, boolean usingRaft) {
+		if (makeAbstractPath(startLoc, endLoc, curDirection, hasKey, hasAxe, numDyna, haveRaft, usingRaft))
+			return;
+		AStar a = newAStar(startLoc, endLoc);
+		a.setHeuristic(landmarks.forPassClasses(WorldModel.passClasses(hasKey, hasAxe, numDyna, haveRaft, usingRaft)));
+		a.callBidirectionalSearch(hasKey, hasAxe, numDyna, haveRaft, usingRaft);
+		addPathMoves(startLoc, curDirection, a.getSuccessPath());
+	}
+
+	/**
+	 * Makes the treasure and the first tools seen landmarks, home is one from
+	 * the start. Landmarks far from each other and out at the ends of trips
+	 * give the best estimates, these are where trips go
+	 */
+	private void addLandmarks() {
+		if (wm.isTreasVisible())
+			landmarks.add(wm.getTreasLoc());
+		for (LocationIndex tools : Arrays.asList(wm.getKeyLocs(), wm.getAxeLocs(), wm.getDynaLocs())) {
+			if (!tools.isEmpty())
+				landmarks.add(tools.toArray()[0]);
+		}
+	}
+
+	/**
+	 * Searches over the cluster entrances (PathAbstraction) when startLoc and
+	 * endLoc are clusters apart, and adds the moves of the path found to
+	 * agentMoves queue. Nearer ends are left to AStar, the entrance search
+	 * only pays off over a few clusters and its paths can be a few moves
+	 * longer
+	 * 
+	 * @param startLoc
+	 *            the location of agent
+	 * @param endLoc
+	 *            the location of destination agent wants to reach
+	 * @param curDirection
+	 *            direction agent is facing
+	 * @param hasKey
+	 *            if the agent holds a key
+	 * @param hasAxe
+	 *            if the agent holds an axe
+	 * @param numDyna
+	 *            if the agent has any dynamites
+	 * @param haveRaft
+	 *            if the agent has a raft
+	 * @param usingRaft
+	 *            if the agent is already using raft
+	 * @return true if a path was found and added
+	 */
+	private boolean makeAbstractPath(int startLoc, int endLoc, int curDirection, boolean hasKey, boolean hasAxe,
+			int numDyna, boolean haveRaft, boolean usingRaft) {
+		if (clustersApart(startLoc, endLoc) < 2)
+			return false;
+		int passClasses = WorldModel.passClasses(hasKey, hasAxe, numDyna, haveRaft, usingRaft);
+		if (abstraction.search(startLoc, endLoc, passClasses) == PathAbstraction.INFINITY)
+			return false;
+		addPathMoves(startLoc, curDirection, abstraction.getSuccessPath());
+		return true;
+	}
+
+	/**
+	 * @return clusters between the clusters of two tiles, the most of across
+	 *         and up
+	 */
+	private static int clustersApart(int from, int to) {
+		int bits = PathAbstraction.CLUSTER_BITS;
+		return Math.max(Math.abs((Coord.x(from) >> bits) - (Coord.x(to) >> bits)),
+				Math.abs((Coord.y(from) >> bits) - (Coord.y(to) >> bits)));
+	}
+
+	/**
+	 * Steps home down the distance field, repaired with what this move
+	 * revealed, and adds the moves for the one step to agentMoves queue, so
+	 * the next step is picked again with the next view
+	 * 
+	 * @Pre home can be reached already
+	 * @param startLoc
+	 *            the location of agent
+	 * @param curDirection
+	 *            direction agent is facing
+	 * @param hasKey
+	 *            if the agent holds a key
+	 * @param hasAxe
+	 *            if the agent holds an axe
+	 * @param numDyna
+	 *            if the agent has any dynamites
+	 * @param haveRaft
+	 *            if the agent has a raft
+	 * @param usingRaft
+	 *            if the agent is already using raft
+	 */
+	private void makeHomeStep(int startLoc, int curDirection, boolean hasKey, boolean hasAxe, int numDyna,
+			boolean haveRaft, boolean usingRaft) {
+		int passClasses = WorldModel.passClasses(hasKey, hasAxe, numDyna, haveRaft, usingRaft);
+		int next = landmarks.field(Coord.ORIGIN, passClasses).nextStep(startLoc, passClasses, curDirection);
+		addPathMoves(startLoc, curDirection, (next == Coord.NONE) ? new int[0] : new int[] { next });
+	}
 
-		// Iterate through moves in reverse so they are presented as moves from
-		// startLoc -> endLoc
-		// Not taking last tile as it is our destination (t = 0)
-		for (int t = path.size() - 1; t >= 1; t--) {
-			Point2D.Double currPoint = path.get(t);
+	/**
+	 * Searches over the agent's items as well as its location from startLoc
+	 * to endLoc, passing viaLoc on the way, and adds the moves of the plan
+	 * found to agentMoves queue, chops, unlocks and blasts included. With a
+	 * viaLoc the moves stop there, the rest is only to know a way on exists
+	 * and is planned again with what was seen on the way
+	 * 
+	 * A search that finds nothing is not run again with the same ends and
+	 * items until the map changes, one that ran out of time only until the
+	 * next decision
+	 * 
+	 * @param startLoc
+	 *            the location of agent
+	 * @param viaLoc
+	 *            the location to pass first, Coord.NONE if none
+	 * @param endLoc
+	 *            the location of destination agent wants to reach
+	 * @param curDirection
+	 *            direction agent is facing
+	 * @return true if a plan was found and added
+	 */
+	private boolean makeResourcePathAStar(int startLoc, int viaLoc, int endLoc, int curDirection) {
+		if (wm.getMapVersion() != resourceFailedVersion) {
+			resourceFailed.clear();
+			resourceFailedVersion = wm.getMapVersion();
+		}
+		int items = (wm.holdKey() ? 1 : 0) | (wm.holdAxe() ? 2 : 0) | (wm.holdRaft() ? 4 : 0)
+				| (wm.usingRaft() ? 8 : 0) | (wm.getNumDyna() << 4);
+		List<Integer> query = Arrays.asList(startLoc, viaLoc, endLoc, items);
+		Long failedUntil = resourceFailed.get(query);
+		if (failedUntil != null && failedUntil >= deadline)
+			return false;
+		ResourceSearch rs = new ResourceSearch(wm.getMap(), startLoc, viaLoc, endLoc);
+		rs.setStats(decisionStats);
+		if (!rs.search(wm.holdKey(), wm.holdAxe(), wm.getNumDyna(), wm.holdRaft(), wm.usingRaft(), deadline)) {
+			// Out of time, or the label limit, which the same search hits again
+			boolean outOfTime = rs.gaveUp() && System.nanoTime() > deadline;
+			resourceFailed.put(query, outOfTime ? deadline : Long.MAX_VALUE);
+			return false;
+		}
+		int[] path = rs.getPath();
+		char[] actions = rs.getActions();
+		for (int t = 0; t < path.length; t++) {
+			int currPoint = (t == 0) ? startLoc : path[t - 1];
+			int directionHeaded = Coord.direction(currPoint, path[t]);
+			agentMoves.addAll(getMoveAlign(curDirection, directionHeaded));
+			curDirection = directionHeaded;
+			if (actions[t] != 0)
+				agentMoves.add(actions[t]);
+			agentMoves.add(WorldModel.INSTRUCT_FORWARD);
+			if (path[t] == viaLoc)
+				break;
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the moves to follow a path to agentMoves queue, cutting down trees
+	 * and unlocking doors on the way
+	 * 
+	 * @param startLoc
+	 *            the location of agent
+	 * @param curDirection
+	 *            direction agent is facing
+	 * @param path
+	 *            path from startLoc in travel order without startLoc
+	 */
+	private void addPathMoves(int startLoc, int curDirection, int[] path) {
+		addPathMoves(startLoc, curDirection, path, CLEAR_GATES);
+	}
+
+	/**
+	 * Adds the moves to follow a path to agentMoves queue, clearing what is
+	 * in the way up to the given level
+	 * 
+	 * @param startLoc
+	 *            the location of agent
+	 * @param curDirection
+	 *            direction agent is facing
+	 * @param path
+	 *            path from startLoc in travel order without startLoc
+	 * @param clear
+	 *            CLEAR_NONE to only move, CLEAR_GATES to chop and unlock too,
+	 *            CLEAR_WALLS to blast walls too
+	 */
+	private void addPathMoves(int startLoc, int curDirection, int[] path, int clear) {
+		// Iterate through moves from startLoc -> endLoc
+		for (int t = 0; t < path.length; t++) {
+			int currPoint = (t == 0) ? startLoc : path[t - 1];
 
 			// Check what direction we are going in (NORTH, SOUTH, WEST, EAST)
-			int directionHeaded = getNextTileDir(currPoint, path.get(t - 1));
+			int directionHeaded = Coord.direction(currPoint, path[t]);
 			// Get list of rotation moves needed before we go forward
 			LinkedList<Character> alignMoves = getMoveAlign(curDirection, directionHeaded);
 			// Add rotation moves to agentMoves
@@ -545,12 +868,14 @@ public class AgentPlanner {
 			// Update curDirection to reflect rotation
 			curDirection = directionHeaded;
 
-			// Check if we need to cut down a tree or unlock a door
+			// Check if we need to cut down a tree, unlock a door or blast
 			char nextTile = wm.getMap().get(wm.getFrontTile(currPoint, curDirection));
-			if (nextTile == WorldModel.OBSTACLE_TREE) {
+			if (clear >= CLEAR_GATES && nextTile == WorldModel.OBSTACLE_TREE) {
 				agentMoves.add(WorldModel.INSTRUCT_CHOP);
-			} else if (nextTile == WorldModel.OBSTACLE_DOOR) {
+			} else if (clear >= CLEAR_GATES && nextTile == WorldModel.OBSTACLE_DOOR) {
 				agentMoves.add(WorldModel.INSTRUCT_UNLOCK);
+			} else if (clear >= CLEAR_WALLS && nextTile == WorldModel.OBSTACLE_WALL) {
+				agentMoves.add(WorldModel.INSTRUCT_BLAST);
 			}
 			agentMoves.add(WorldModel.INSTRUCT_FORWARD); // Now we also need 1
 															// forward move
@@ -581,26 +906,11 @@ public class AgentPlanner {
 	 * @param usingRaft
 	 *            if the agent is already using raft
 	 */
-	private void makeIslandPathAStar(Point2D.Double startLoc, Point2D.Double endLoc, int curDirection, boolean hasKey,
+	private void makeIslandPathAStar(int startLoc, int endLoc, int curDirection, boolean hasKey,
 			boolean hasAxe, int numDyna, boolean haveRaft, boolean usingRaft) {
-		AStar a = new AStar(wm.getMap(), startLoc, endLoc);
+		AStar a = newAStar(startLoc, endLoc);
 		a.callIslandSearch(hasKey, hasAxe, numDyna, haveRaft, usingRaft);
-		LinkedList<Point2D.Double> path = a.getSuccessPath();
-		path.addLast(startLoc);
-		for (int t = path.size() - 1; t >= 1; t--) {
-			Point2D.Double currPoint = path.get(t);
-			int directionHeaded = getNextTileDir(currPoint, path.get(t - 1));
-			LinkedList<Character> alignMoves = getMoveAlign(curDirection, directionHeaded);
-			agentMoves.addAll(alignMoves);
-			curDirection = directionHeaded;
-			char nextTile = wm.getMap().get(wm.getFrontTile(currPoint, curDirection));
-			if (nextTile == WorldModel.OBSTACLE_TREE) {
-				agentMoves.add(WorldModel.INSTRUCT_CHOP);
-			} else if (nextTile == WorldModel.OBSTACLE_DOOR) {
-				agentMoves.add(WorldModel.INSTRUCT_UNLOCK);
-			}
-			agentMoves.add(WorldModel.INSTRUCT_FORWARD);
-		}
+		addPathMoves(startLoc, curDirection, a.getSuccessPath());
 	}
 
 	/**
@@ -628,31 +938,11 @@ public class AgentPlanner {
 	 * @param usingRaft
 	 *            if the agent is already using raft
 	 */
-	private void makeDynaPathAStar(Point2D.Double startLoc, Point2D.Double endLoc, int curDirection, boolean hasKey,
+	private void makeDynaPathAStar(int startLoc, int endLoc, int curDirection, boolean hasKey,
 			boolean hasAxe, int numDyna, boolean haveRaft, boolean usingRaft) {
-		AStar a = new AStar(wm.getMap(), startLoc, endLoc); // New AStar search
+		AStar a = newAStar(startLoc, endLoc); // New AStar search
 		a.callDynamiteSearch(hasKey, hasAxe, numDyna, haveRaft, usingRaft);
-		LinkedList<Point2D.Double> path = a.getSuccessPath(); // Get optimal
-																// path
-		path.addLast(startLoc); // add startLocing position to end of path
-								// (before reversal)
-		for (int t = path.size() - 1; t >= 1; t--) {
-			Point2D.Double currPoint = path.get(t);
-			int directionHeaded = getNextTileDir(currPoint, path.get(t - 1));
-			LinkedList<Character> alignMoves = getMoveAlign(curDirection, directionHeaded);
-			agentMoves.addAll(alignMoves);
-			curDirection = directionHeaded;
-			char nextTile = wm.getMap().get(wm.getFrontTile(currPoint, curDirection));
-			if (nextTile == WorldModel.OBSTACLE_TREE) {
-				agentMoves.add(WorldModel.INSTRUCT_CHOP);
-			} else if (nextTile == WorldModel.OBSTACLE_DOOR) {
-				agentMoves.add(WorldModel.INSTRUCT_UNLOCK);
-			} else if (nextTile == WorldModel.OBSTACLE_WALL) {
-				agentMoves.add(WorldModel.INSTRUCT_BLAST);
-			}
-			agentMoves.add(WorldModel.INSTRUCT_FORWARD); // Now we also need 1
-															// forward move
-		}
+		addPathMoves(startLoc, curDirection, a.getSuccessPath(), CLEAR_WALLS);
 	}
 
 	/**
@@ -674,24 +964,19 @@ public class AgentPlanner {
 	 * @param hasAxe
 	 *            if the agent holds an axe
 	 */
-	private void makeFirstWaterPathAStar(Point2D.Double startLoc, Point2D.Double endLoc, int curDirection,
+	private void makeFirstWaterPathAStar(int startLoc, int endLoc, int curDirection,
 			boolean hasKey, boolean hasAxe) {
-		AStar a = new AStar(wm.getMap(), startLoc, endLoc); // New AStar search
+		AStar a = newAStar(startLoc, endLoc); // New AStar search
 		a.firstWaterSearch(hasKey, hasAxe);
-		LinkedList<Point2D.Double> path = a.getSuccessPath();
-		path.addLast(startLoc);
-		for (int t = path.size() - 1; t >= 1; t--) {
-			Point2D.Double currPoint = path.get(t);
-			int directionHeaded = getNextTileDir(currPoint, path.get(t - 1));
-			LinkedList<Character> alignMoves = getMoveAlign(curDirection, directionHeaded);
-			agentMoves.addAll(alignMoves);
-			curDirection = directionHeaded;
-			char nextTile = wm.getMap().get(wm.getFrontTile(currPoint, curDirection));
-			agentMoves.add(WorldModel.INSTRUCT_FORWARD);
-			if (nextTile == WorldModel.OBSTACLE_WATER) {
+		int[] path = a.getSuccessPath();
+		// Only as far as the first water tile, the raft is launched there
+		for (int t = 0; t < path.length; t++) {
+			if (wm.getMap().get(path[t]) == WorldModel.OBSTACLE_WATER) {
+				path = Arrays.copyOf(path, t + 1);
 				break;
 			}
 		}
+		addPathMoves(startLoc, curDirection, path, CLEAR_NONE);
 	}
 
 	/**
@@ -713,28 +998,11 @@ public class AgentPlanner {
 	 * @param hasAxe
 	 *            if the agent holds an axe
 	 */
-	private void makeBackLandPathAStar(Point2D.Double startLoc, Point2D.Double endLoc, int curDirection, boolean hasKey,
+	private void makeBackLandPathAStar(int startLoc, int endLoc, int curDirection, boolean hasKey,
 			boolean hasAxe) {
-		AStar a = new AStar(wm.getMap(), startLoc, endLoc); // New AStar search
+		AStar a = newAStar(startLoc, endLoc); // New AStar search
 		a.callRiverSearch(hasKey);
-		LinkedList<Point2D.Double> path = a.getSuccessPath();
-		path.addLast(startLoc);
-		for (int t = path.size() - 1; t >= 1; t--) {
-			Point2D.Double currPoint = path.get(t);
-			int directionHeaded = getNextTileDir(currPoint, path.get(t - 1));
-			LinkedList<Character> alignMoves = getMoveAlign(curDirection, directionHeaded);
-			agentMoves.addAll(alignMoves);
-			curDirection = directionHeaded;
-			char nextTile = wm.getMap().get(wm.getFrontTile(currPoint, curDirection));
-			if (nextTile == WorldModel.OBSTACLE_TREE) {
-				agentMoves.add(WorldModel.INSTRUCT_CHOP);
-			} else if (nextTile == WorldModel.OBSTACLE_DOOR) {
-				agentMoves.add(WorldModel.INSTRUCT_UNLOCK);
-			} else if (nextTile == WorldModel.OBSTACLE_WALL) {
-				agentMoves.add(WorldModel.INSTRUCT_BLAST);
-			}
-			agentMoves.add(WorldModel.INSTRUCT_FORWARD);
-		}
+		addPathMoves(startLoc, curDirection, a.getSuccessPath(), CLEAR_WALLS);
 	}
 
 	/**
@@ -755,19 +1023,10 @@ public class AgentPlanner {
 	 * @param hasAxe
 	 *            if the agent holds an axe
 	 */
-	private void makeWaterPathAStar(Point2D.Double startLoc, Point2D.Double endLoc, int curDirection) {
-		AStar a = new AStar(wm.getMap(), startLoc, endLoc);
+	private void makeWaterPathAStar(int startLoc, int endLoc, int curDirection) {
+		AStar a = newAStar(startLoc, endLoc);
 		a.callWaterSearch();
-		LinkedList<Point2D.Double> path = a.getSuccessPath();
-		path.addLast(startLoc);
-		for (int t = path.size() - 1; t >= 1; t--) {
-			Point2D.Double currPoint = path.get(t);
-			int directionHeaded = getNextTileDir(currPoint, path.get(t - 1));
-			LinkedList<Character> alignMoves = getMoveAlign(curDirection, directionHeaded);
-			agentMoves.addAll(alignMoves);
-			curDirection = directionHeaded;
-			agentMoves.add(WorldModel.INSTRUCT_FORWARD);
-		}
+		addPathMoves(startLoc, curDirection, a.getSuccessPath(), CLEAR_NONE);
 	}
 
 	/**
@@ -789,26 +1048,11 @@ public class AgentPlanner {
 	 * @param hasAxe
 	 *            if the agent holds an axe
 	 */
-	private void makeBackIslandPathAStar(Point2D.Double startLoc, Point2D.Double endLoc, int curDirection,
+	private void makeBackIslandPathAStar(int startLoc, int endLoc, int curDirection,
 			boolean hasKey, boolean hasAxe) {
-		AStar a = new AStar(wm.getMap(), startLoc, endLoc);
+		AStar a = newAStar(startLoc, endLoc);
 		a.callIslandSearch(hasKey, hasAxe, 0, true, true);
-		LinkedList<Point2D.Double> path = a.getSuccessPath();
-		path.addLast(startLoc);
-		for (int t = path.size() - 1; t >= 1; t--) {
-			Point2D.Double currPoint = path.get(t);
-			int directionHeaded = getNextTileDir(currPoint, path.get(t - 1));
-			LinkedList<Character> alignMoves = getMoveAlign(curDirection, directionHeaded);
-			agentMoves.addAll(alignMoves);
-			curDirection = directionHeaded;
-			char nextTile = wm.getMap().get(wm.getFrontTile(currPoint, curDirection));
-			if (nextTile == WorldModel.OBSTACLE_TREE) {
-				agentMoves.add(WorldModel.INSTRUCT_CHOP);
-			} else if (nextTile == WorldModel.OBSTACLE_DOOR) {
-				agentMoves.add(WorldModel.INSTRUCT_UNLOCK);
-			}
-			agentMoves.add(WorldModel.INSTRUCT_FORWARD);
-		}
+		addPathMoves(startLoc, curDirection, a.getSuccessPath());
 	}
 
 	/**
@@ -828,32 +1072,17 @@ public class AgentPlanner {
 	 *            direction agent is facing
 	 * @return true if agent can get to the location for free (given a raft)
 	 */
-	private boolean theoreticalRaftPathAStar(Point2D.Double startLoc, Point2D.Double endLoc, int curDirection) {
-		AStar a = new AStar(wm.getMap(), startLoc, endLoc);
+	private boolean theoreticalRaftPathAStar(int startLoc, int endLoc, int curDirection) {
+		AStar a = newAStar(startLoc, endLoc);
 		int gcost = a.callTheoreticalRaftSearch();
 		if (endLoc == wm.getTreasLoc()) {
 			gcost--;
 		}
-		LinkedList<Point2D.Double> path = a.getSuccessPath();
-		if (path.size() == 0)
+		int[] path = a.getSuccessPath();
+		if (path.length == 0 || gcost >= 0)
 			return false;
-		path.addLast(startLoc);
-
-		for (int t = path.size() - 1; t >= 1; t--) {
-			Point2D.Double currPoint = path.get(t);
-			int directionHeaded = getNextTileDir(currPoint, path.get(t - 1));
-			LinkedList<Character> alignMoves = getMoveAlign(curDirection, directionHeaded);
-			if (gcost < 0)
-				agentMoves.addAll(alignMoves);
-			curDirection = directionHeaded;
-			if (gcost < 0) {
-				agentMoves.add(WorldModel.INSTRUCT_FORWARD);
-			}
-		}
-
-		if (gcost < 0)
-			return true;
-		return false;
+		addPathMoves(startLoc, curDirection, path, CLEAR_NONE);
+		return true;
 	}
 
 	/**
@@ -872,11 +1101,11 @@ public class AgentPlanner {
 	 *            direction agent is facing
 	 * @return true if agent can benefit by using dynamites to the destination
 	 */
-	private boolean theoreticalDynaPathAStar(Point2D.Double startLoc, Point2D.Double endLoc, int curDirection) {
+	private boolean theoreticalDynaPathAStar(int startLoc, int endLoc, int curDirection) {
 		dynasNeeded = 0;
-		AStar a = new AStar(wm.getMap(), startLoc, endLoc);
+		AStar a = newAStar(startLoc, endLoc);
 		int gcost = a.callTheoreticalDynaSearch();
-		if (endLoc == new Point2D.Double(0, 0)) {
+		if (endLoc == Coord.ORIGIN) {
 			gcost = gcost - (wm.getNumDyna() * 160);
 			gcost--;
 		}
@@ -890,24 +1119,9 @@ public class AgentPlanner {
 			gcost--;
 		}
 		if (tileCheck == WorldModel.TOOL_DYNAMITE) {
-			for (int p = 0; p < 4; p++) {
-				int nextX = (int) endLoc.getX();
-				int nextY = (int) endLoc.getY();
-				switch (p) {
-				case 0:
-					nextX += 1;
-					break; // Tile East
-				case 1:
-					nextX -= 1;
-					break; // Tile West
-				case 2:
-					nextY += 1;
-					break; // Tile North
-				case 3:
-					nextY -= 1;
-					break; // Tile South
-				}
-				Point2D.Double nextPoint = new Point2D.Double(nextX, nextY);
+			// Add west, east, north, south tiles, like a plus sign
+			for (int step : Coord.PLUS) {
+				int nextPoint = endLoc + step;
 				char nextTile = wm.getMap().get(nextPoint);
 				if (nextTile == WorldModel.TOOL_DYNAMITE) {
 					gcost = gcost - 160;
@@ -915,13 +1129,12 @@ public class AgentPlanner {
 			}
 		}
 
-		LinkedList<Point2D.Double> path = a.getSuccessPath();
-		if (path.size() == 0)
+		int[] path = a.getSuccessPath();
+		if (path.length == 0)
 			return false;
-		path.addLast(startLoc);
-		for (int i = path.size() - 1; i >= 1; i--) {
-			Point2D.Double currPoint = path.get(i);
-			int directionHeaded = getNextTileDir(currPoint, path.get(i - 1));
+		for (int i = 0; i < path.length; i++) {
+			int currPoint = (i == 0) ? startLoc : path[i - 1];
+			int directionHeaded = Coord.direction(currPoint, path[i]);
 			LinkedList<Character> alignMoves = getMoveAlign(curDirection, directionHeaded);
 			if (gcost < 0)
 				agentMoves.addAll(alignMoves);
@@ -971,16 +1184,15 @@ public class AgentPlanner {
 	 * @param curDirection
 	 *            direction agent is facing
 	 */
-	private void theoreticalDynaPathCounter(Point2D.Double startLoc, Point2D.Double endLoc, int curDirection) {
+	private void theoreticalDynaPathCounter(int startLoc, int endLoc, int curDirection) {
 		dynasNeeded = 0;
-		AStar a = new AStar(wm.getMap(), startLoc, endLoc);
+		AStar a = newAStar(startLoc, endLoc);
 		a.callTheoreticalDynaSearch();
-		LinkedList<Point2D.Double> path = a.getSuccessPath();
-		if (path.size() != 0) {
-			path.addLast(startLoc);
-			for (int i = path.size() - 1; i >= 1; i--) {
-				Point2D.Double currPoint = path.get(i);
-				int directionHeaded = getNextTileDir(currPoint, path.get(i - 1));
+		int[] path = a.getSuccessPath();
+		if (path.length != 0) {
+			for (int i = 0; i < path.length; i++) {
+				int currPoint = (i == 0) ? startLoc : path[i - 1];
+				int directionHeaded = Coord.direction(currPoint, path[i]);
 				curDirection = directionHeaded;
 				char nextTile = wm.getMap().get(wm.getFrontTile(currPoint, curDirection));
 				if (nextTile == WorldModel.OBSTACLE_WALL) {
@@ -1009,14 +1221,13 @@ public class AgentPlanner {
 	 * @param curDirection
 	 *            direction agent is facing
 	 */
-	private void theoreticalRaftPathCounter(Point2D.Double startLoc, Point2D.Double endLoc, int curDirection) {
-		AStar a = new AStar(wm.getMap(), startLoc, endLoc);
+	private void theoreticalRaftPathCounter(int startLoc, int endLoc, int curDirection) {
+		AStar a = newAStar(startLoc, endLoc);
 		a.callTheoreticalRaftSearch();
-		LinkedList<Point2D.Double> path = a.getSuccessPath();
-		path.addLast(startLoc);
-		for (int i = path.size() - 1; i >= 1; i--) {
-			Point2D.Double currPoint = path.get(i);
-			int directionHeaded = getNextTileDir(currPoint, path.get(i - 1));
+		int[] path = a.getSuccessPath();
+		for (int i = 0; i < path.length; i++) {
+			int currPoint = (i == 0) ? startLoc : path[i - 1];
+			int directionHeaded = Coord.direction(currPoint, path[i]);
 			curDirection = directionHeaded;
 			char nextTile = wm.getMap().get(wm.getFrontTile(currPoint, curDirection));
 			if (nextTile == WorldModel.OBSTACLE_WATER) {
@@ -1025,37 +1236,6 @@ public class AgentPlanner {
 		}
 	}
 
-	/**
-	 * Helper function for the direction travelling from the startLoc point to
-	 * endLoc point.
-	 * 
-	 * @param startLoc
-	 *            the point to startLoc
-	 * @param endLoc
-	 *            the point to end
-	 * @return agent direction to move towards (NORTH, EAST, SOUTH, WEST) to get
-	 *         from startLoc to endLoc or -1 if none to change
-	 */
-	private int getNextTileDir(Point2D.Double startLoc, Point2D.Double endLoc) {
-		int xDiff = (int) (endLoc.getX() - startLoc.getX());
-		int yDiff = (int) (endLoc.getY() - startLoc.getY());
-		int endingDir = -1;
-		if (xDiff != 0) {
-			if (xDiff < 0) {
-				endingDir = WorldModel.WEST;
-			} else {
-				endingDir = WorldModel.EAST;
-			}
-		} else if (yDiff != 0) {
-			if (yDiff < 0) {
-				endingDir = WorldModel.SOUTH;
-			} else {
-				endingDir = WorldModel.NORTH;
-			}
-		}
-		return endingDir;
-	}
-
 	/**
 	 * Returns a list of moves for agent so initial and final directions are
 	 * aligned.
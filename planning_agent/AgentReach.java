@@ -1,6 +1,3 @@
-import java.util.*;
-import java.awt.geom.Point2D;
-
 /**
  * Representation of AgentReach class Performs reachable tests from startPoint
  * to endPoint Idea founded from Flood/Seed Fill algorithm
@@ -8,9 +5,11 @@ import java.awt.geom.Point2D;
  * @author  bennygmate
  */
 public class AgentReach {
-	private final Point2D.Double startPoint;
-	private final Point2D.Double endPoint;
-	private final Map<Point2D.Double, Character> agentMap;
+	private final int startPoint;
+	private final int endPoint;
+	private final TileMap agentMap;
+	// Counters the fills add to, null to not count
+	private SearchStats stats;
 
 	/**
 	 * Constructor
@@ -20,12 +19,25 @@ public class AgentReach {
 	 * @param startPoint
 	 *            point to start checking
 	 * @param endPoint
-	 *            point connected to startPoint
+	 *            point connected to startPoint, Coord.NONE to fill everything
+	 *            reachable
 	 */
-	public AgentReach(Map<Point2D.Double, Character> agentMap, Point2D.Double startPoint, Point2D.Double endPoint) {
+	public AgentReach(TileMap agentMap, int startPoint, int endPoint) {
 		this.agentMap = agentMap;
 		this.startPoint = startPoint;
 		this.endPoint = endPoint;
+		this.stats = null;
+	}
+
+	/**
+	 * Sets counters for the seed fills to add their expansions, queue use
+	 * and time to
+	 * 
+	 * @param stats
+	 *            counters to add to, null to not count
+	 */
+	public void setStats(SearchStats stats) {
+		this.stats = stats;
 	}
 
 	/**
@@ -46,42 +58,7 @@ public class AgentReach {
 	 */
 
 	public boolean reach(boolean haveKey, boolean haveAxe, int numDyna, boolean haveRaft, boolean usingRaft) {
-		Queue<Point2D.Double> openQ = new ArrayDeque<>();
-		openQ.add(startPoint);
-		Set<Point2D.Double> reachableTiles = new HashSet<>();
-		while (!openQ.isEmpty()) {
-			Point2D.Double firstPoint = openQ.remove();
-			if (firstPoint.equals(endPoint))
-				return true;
-			reachableTiles.add(firstPoint); // Mark as Seen
-			// Add west, east, north, south tiles, like a plus sign
-			for (int p = 0; p < 4; p++) {
-				int nextX = (int) firstPoint.getX();
-				int nextY = (int) firstPoint.getY();
-				switch (p) {
-				case 0:
-					nextX += 1;
-					break; // Tile East
-				case 1:
-					nextX -= 1;
-					break; // Tile West
-				case 2:
-					nextY += 1;
-					break; // Tile North
-				case 3:
-					nextY -= 1;
-					break; // Tile South
-				}
-				Point2D.Double nextPoint = new Point2D.Double(nextX, nextY);
-				char nextTile = agentMap.get(nextPoint);
-				if (!WorldModel.tilePassWithItem(nextTile, haveKey, haveAxe, numDyna, haveRaft, usingRaft)) {
-					continue; // Tile can't be passed
-				}
-				if (!reachableTiles.contains(nextPoint))
-					openQ.add(nextPoint);
-			}
-		}
-		return false;
+		return fillTo(WorldModel.passClasses(haveKey, haveAxe, numDyna, haveRaft, usingRaft));
 	}
 
 	/**
@@ -91,42 +68,108 @@ public class AgentReach {
 	 * @return true if goal point is reachable from start point, false otherwise
 	 */
 	public boolean waterReach() {
-		Queue<Point2D.Double> openQ = new ArrayDeque<>();
-		openQ.add(startPoint);
-		Set<Point2D.Double> reachableTiles = new HashSet<>();
-		while (!openQ.isEmpty()) {
-			Point2D.Double firstPoint = openQ.remove();
-			if (firstPoint.equals(endPoint))
-				return true;
-			reachableTiles.add(firstPoint); // Mark as Seen
+		return fillTo(WorldModel.PASS_WATER);
+	}
+
+	/**
+	 * Finds every tile the agent can reach from the start point depending on
+	 * agent's items, so many end points can be tested with one fill
+	 * 
+	 * @param haveKey
+	 *            whether Agent holds key
+	 * @param haveAxe
+	 *            whether Agent holds axe
+	 * @param numDyna
+	 *            amount of dynamite agent holds
+	 * @param haveRaft
+	 *            whether Agent holds raft
+	 * @param usingRaft
+	 *            whether Agent is using raft
+	 * @return reachable flag for each tile, indexed by TileMap index
+	 */
+	public boolean[] reachableTiles(boolean haveKey, boolean haveAxe, int numDyna, boolean haveRaft,
+			boolean usingRaft) {
+		long[] passable = agentMap.layerMask(WorldModel.passClasses(haveKey, haveAxe, numDyna, haveRaft, usingRaft));
+		boolean[] reachableTiles = new boolean[agentMap.size()];
+		fill(passable, reachableTiles);
+		return reachableTiles;
+	}
+
+	/**
+	 * Finds every tile the agent can reach from the start point (ONLY FOR
+	 * WATER)
+	 * 
+	 * @return reachable flag for each tile, indexed by TileMap index
+	 */
+	public boolean[] waterReachableTiles() {
+		boolean[] reachableTiles = new boolean[agentMap.size()];
+		fill(agentMap.layerMask(WorldModel.PASS_WATER), reachableTiles);
+		return reachableTiles;
+	}
+
+	/**
+	 * Reach test by seed fill
+	 * 
+	 * @param passClasses
+	 *            bitmask of tile classes that can be passed
+	 * @return true if end point was reached
+	 */
+	private boolean fillTo(int passClasses) {
+		return fill(agentMap.layerMask(passClasses), new boolean[agentMap.size()]);
+	}
+
+	/**
+	 * Seed fills out from the start point over passable tiles, stopping early
+	 * if the end point is reached
+	 * 
+	 * @param passable
+	 *            bitset of passable tiles from TileMap.layerMask
+	 * @param reachableTiles
+	 *            marked with every tile filled
+	 * @return true if end point was reached
+	 */
+	private boolean fill(long[] passable, boolean[] reachableTiles) {
+		long started = System.nanoTime();
+		// Queue of tiles to visit, each tile is queued at most once
+		int[] openQ = new int[agentMap.size()];
+		int head = 0;
+		int tail = 0;
+		openQ[tail++] = startPoint;
+		reachableTiles[agentMap.index(startPoint)] = true; // Mark as Seen
+		while (head < tail) {
+			int firstPoint = openQ[head++];
+			if (firstPoint == endPoint)
+				return finish(started, true);
+			if (stats != null) {
+				stats.pop();
+				stats.expand();
+			}
 			// Add west, east, north, south tiles, like a plus sign
-			for (int p = 0; p < 4; p++) {
-				int nextX = (int) firstPoint.getX();
-				int nextY = (int) firstPoint.getY();
-				switch (p) {
-				case 0:
-					nextX += 1;
-					break; // Tile East
-				case 1:
-					nextX -= 1;
-					break; // Tile West
-				case 2:
-					nextY += 1;
-					break; // Tile North
-				case 3:
-					nextY -= 1;
-					break; // Tile South
-				}
-				Point2D.Double nextPoint = new Point2D.Double(nextX, nextY);
-				char nextTile = agentMap.get(nextPoint);
-				if (!WorldModel.tilePassWater(nextTile)) {
+			for (int step : Coord.PLUS) {
+				int nextPoint = firstPoint + step;
+				int nextIndex = agentMap.index(nextPoint);
+				if (!TileMap.isSet(passable, nextIndex)) {
 					continue; // Tile can't be passed
 				}
-				if (!reachableTiles.contains(nextPoint))
-					openQ.add(nextPoint);
+				if (!reachableTiles[nextIndex]) {
+					reachableTiles[nextIndex] = true;
+					openQ[tail++] = nextPoint;
+					if (stats != null)
+						stats.push(true, tail - head);
+				}
 			}
 		}
-		return false;
+		return finish(started, false);
 	}
-}
 
+	/**
+	 * Counts the fill into stats, if it is set
+	 * 
+	 * @return reached
+	 */
+	private boolean finish(long started, boolean reached) {
+		if (stats != null)
+			stats.finish(0, started);
+		return reached;
+	}
+}
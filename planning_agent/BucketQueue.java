@@ -0,0 +1,164 @@
+import java.util.Arrays;
+
+/**
+ * Representation of BucketQueue class Open list with one bucket per key
+ * (Dial's algorithm), so adding a tile and moving it to a new key are O(1)
+ * and taking the smallest is amortised O(1) while keys stay in a small range.
+ * Each bucket is a doubly linked list threaded through per tile arrays
+ *
+ * Cost models with a negative step (dynamite bonus) can push a key below
+ * everything seen so far, so bucket 0 is key base and the buckets are shifted
+ * up when a lower key arrives. The cursor to the smallest bucket is moved
+ * back down when that happens, so the queue stays exact for any keys
+ *
+ * @author bennygmate
+ */
+public class BucketQueue implements OpenSet {
+	// Buckets kept free below the lowest key when shifting
+	private final static int SHIFT_SLACK = 64;
+	// First tile index in each bucket, -1 if empty
+	private int[] head;
+	// Key of bucket 0
+	private int base;
+	// No bucket below cursor holds a tile, none above highest either
+	private int cursor;
+	private int highest;
+	private int size;
+	// Per tile links and keys, indexed by tile index
+	private int[] next;
+	private int[] prev;
+	private int[] key;
+	private boolean[] queued;
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity
+	 *            number of tile indices, every index is below this
+	 */
+	public BucketQueue(int capacity) {
+		this.head = new int[256];
+		Arrays.fill(head, -1);
+		this.base = 0;
+		this.cursor = 0;
+		this.highest = -1;
+		this.size = 0;
+		this.next = new int[capacity];
+		this.prev = new int[capacity];
+		this.key = new int[capacity];
+		this.queued = new boolean[capacity];
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean contains(int index) {
+		return queued[index];
+	}
+
+	@Override
+	public int minKey() {
+		while (head[cursor] < 0)
+			cursor++;
+		return base + cursor;
+	}
+
+	@Override
+	public void push(int index, int newKey) {
+		if (queued[index]) {
+			if (key[index] == newKey)
+				return;
+			unlink(index);
+		} else {
+			if (size == 0) {
+				// Nothing queued, so the buckets can start again around this key
+				base = newKey - SHIFT_SLACK;
+				cursor = SHIFT_SLACK;
+				highest = SHIFT_SLACK;
+			}
+			queued[index] = true;
+			size++;
+		}
+		key[index] = newKey;
+		int bucket = newKey - base;
+		if (bucket < 0) {
+			shiftUp(SHIFT_SLACK - bucket);
+			bucket = newKey - base;
+		} else if (bucket >= head.length) {
+			int oldLength = head.length;
+			head = Arrays.copyOf(head, Math.max(bucket + 1, oldLength * 2));
+			Arrays.fill(head, oldLength, head.length, -1);
+		}
+		// Newest first in its bucket
+		prev[index] = -1;
+		next[index] = head[bucket];
+		if (head[bucket] >= 0)
+			prev[head[bucket]] = index;
+		head[bucket] = index;
+		if (bucket < cursor)
+			cursor = bucket;
+		if (bucket > highest)
+			highest = bucket;
+	}
+
+	@Override
+	public int poll() {
+		while (head[cursor] < 0)
+			cursor++;
+		int index = head[cursor];
+		unlink(index);
+		queued[index] = false;
+		size--;
+		return index;
+	}
+
+	@Override
+	public void clear() {
+		if (size > 0) {
+			for (int bucket = cursor; bucket <= highest; bucket++) {
+				for (int index = head[bucket]; index >= 0; index = next[index])
+					queued[index] = false;
+				head[bucket] = -1;
+			}
+		}
+		size = 0;
+	}
+
+	/**
+	 * Takes a tile out of its bucket, leaving it marked as queued
+	 */
+	private void unlink(int index) {
+		if (prev[index] >= 0)
+			next[prev[index]] = next[index];
+		else
+			head[key[index] - base] = next[index];
+		if (next[index] >= 0)
+			prev[next[index]] = prev[index];
+	}
+
+	/**
+	 * Moves every bucket up so lower keys fit below them, in place unless the
+	 * buckets in use no longer fit
+	 */
+	private void shiftUp(int shift) {
+		if (highest + shift >= head.length) {
+			int oldLength = head.length;
+			head = Arrays.copyOf(head, Math.max(highest + shift + 1, oldLength * 2));
+			Arrays.fill(head, oldLength, head.length, -1);
+		}
+		// Buckets above highest are all empty, so only the used ones move
+		System.arraycopy(head, 0, head, shift, highest + 1);
+		Arrays.fill(head, 0, shift, -1);
+		base -= shift;
+		cursor += shift;
+		highest += shift;
+	}
+}
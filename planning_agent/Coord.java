@@ -0,0 +1,113 @@
+/**
+ * Representation of Coord class Packs an x/y map coordinate into a single int
+ * so tiles, paths and search sets can be held as primitives. Each axis is
+ * stored with a bias, so a neighbouring tile is always a fixed offset away
+ * from the packed value
+ *
+ * @author bennygmate
+ */
+public final class Coord {
+	// Bias added to each axis before packing
+	private final static int BIAS = 1 << 15;
+	// Offsets to add to a packed coordinate to step one tile
+	final static int NORTH_STEP = 1;
+	final static int SOUTH_STEP = -1;
+	final static int EAST_STEP = 1 << 16;
+	final static int WEST_STEP = -(1 << 16);
+	// Steps indexed by WorldModel direction (NORTH, EAST, SOUTH, WEST)
+	private final static int[] DIRECTION_STEP = { NORTH_STEP, EAST_STEP, SOUTH_STEP, WEST_STEP };
+	// East, west, north, south tiles, like a plus sign
+	final static int[] PLUS = { EAST_STEP, WEST_STEP, NORTH_STEP, SOUTH_STEP };
+	// Never a tile on the map, used for missing parents and unknown locations
+	final static int NONE = -1;
+	// Agent start location
+	final static int ORIGIN = pack(0, 0);
+
+	private Coord() {
+	}
+
+	/**
+	 * @param x
+	 *            x coordinate
+	 * @param y
+	 *            y coordinate
+	 * @return packed coordinate
+	 */
+	public static int pack(int x, int y) {
+		return ((x + BIAS) << 16) | (y + BIAS);
+	}
+
+	/**
+	 * @param coord
+	 *            packed coordinate
+	 * @return x coordinate
+	 */
+	public static int x(int coord) {
+		return (coord >>> 16) - BIAS;
+	}
+
+	/**
+	 * @param coord
+	 *            packed coordinate
+	 * @return y coordinate
+	 */
+	public static int y(int coord) {
+		return (coord & 0xFFFF) - BIAS;
+	}
+
+	/**
+	 * Returns tile next to coord in the given direction
+	 *
+	 * @param coord
+	 *            packed coordinate
+	 * @param direction
+	 *            the direction to step (NORTH, EAST, SOUTH, WEST)
+	 * @return packed coordinate of the neighbouring tile
+	 */
+	public static int neighbour(int coord, int direction) {
+		return coord + DIRECTION_STEP[direction];
+	}
+
+	/**
+	 * @param direction
+	 *            the direction to step (NORTH, EAST, SOUTH, WEST)
+	 * @return offset to add to a packed coordinate to step that way
+	 */
+	public static int step(int direction) {
+		return DIRECTION_STEP[direction];
+	}
+
+	/**
+	 * Direction travelling from one tile to the next
+	 *
+	 * @param from
+	 *            packed coordinate to start from
+	 * @param to
+	 *            packed coordinate to end on
+	 * @return direction (NORTH, EAST, SOUTH, WEST) to move from the first tile
+	 *         towards the second, or -1 if they are the same
+	 */
+	public static int direction(int from, int to) {
+		int xDiff = x(to) - x(from);
+		int yDiff = y(to) - y(from);
+		if (xDiff != 0)
+			return (xDiff < 0) ? WorldModel.WEST : WorldModel.EAST;
+		if (yDiff != 0)
+			return (yDiff < 0) ? WorldModel.SOUTH : WorldModel.NORTH;
+		return -1;
+	}
+
+	/**
+	 * @return Manhattan distance between the two tiles
+	 */
+	public static int manhattan(int a, int b) {
+		return Math.abs(x(a) - x(b)) + Math.abs(y(a) - y(b));
+	}
+
+	/**
+	 * @return readable (x, y) form of the coordinate
+	 */
+	public static String toString(int coord) {
+		return "(" + x(coord) + ", " + y(coord) + ")";
+	}
+}
@@ -0,0 +1,287 @@
+import java.util.Arrays;
+
+/**
+ * Representation of CostModel class Says which tiles a search may step onto
+ * and what each step costs, as a table from tile representation to cost so
+ * the search loop only does one array lookup per neighbour. One factory per
+ * way the agent moves around the map, a new way of moving is a new factory
+ *
+ * Each model also picks the open list it is searched with. A bucket queue is
+ * faster for every model here, but it breaks ties between equal f costs in
+ * a different order to the binary heap, and the planner relies on the paths
+ * the heap picks for plain, island, river and water travel (the sample maps
+ * are lost otherwise), so only the dynamite and theoretical raft searches use
+ * it for now
+ *
+ * @author bennygmate
+ */
+public final class CostModel {
+	// Cost of stepping onto a tile that can't be passed
+	final static int IMPASSABLE = Integer.MIN_VALUE;
+	// Tile representations are all ASCII
+	private final static int NUM_TILES = 128;
+	private final int[] stepCost;
+	// Search this model with a bucket queue rather than a binary heap
+	private boolean bucketQueue;
+
+	/**
+	 * Constructor, every tile starts impassable
+	 */
+	private CostModel() {
+		this.stepCost = new int[NUM_TILES];
+		Arrays.fill(stepCost, IMPASSABLE);
+		this.bucketQueue = false;
+	}
+
+	/**
+	 * @return true if searches with this model should use a bucket queue
+	 */
+	public boolean bucketQueue() {
+		return bucketQueue;
+	}
+
+	/**
+	 * @return cheapest step onto any passable tile, IMPASSABLE if there is
+	 *         none
+	 */
+	public int minStepCost() {
+		int min = IMPASSABLE;
+		for (int cost : stepCost) {
+			if (cost != IMPASSABLE && (min == IMPASSABLE || cost < min))
+				min = cost;
+		}
+		return min;
+	}
+
+	/**
+	 * @param tile
+	 *            tile representation
+	 * @return cost of stepping onto tile, IMPASSABLE if it can't be passed
+	 */
+	public int stepCost(char tile) {
+		return (tile < NUM_TILES) ? stepCost[tile] : IMPASSABLE;
+	}
+
+	/**
+	 * Plain travel, every passable tile costs 1
+	 *
+	 * @param haveKey
+	 *            Agent holds key
+	 * @param haveAxe
+	 *            Agent holds axe
+	 * @param numDyna
+	 *            Agent has number of dynamites
+	 * @param haveRaft
+	 *            Agent has a raft
+	 * @param usingRaft
+	 *            Agent is using the raft
+	 * @return cost model
+	 */
+	public static CostModel search(boolean haveKey, boolean haveAxe, int numDyna, boolean haveRaft,
+			boolean usingRaft) {
+		return withItems(1, haveKey, haveAxe, numDyna, haveRaft, usingRaft);
+	}
+
+	/**
+	 * Agent is using raft and wants to go to new island, water is free and
+	 * cutting through trees is a bit more expensive
+	 *
+	 * @param haveKey
+	 *            Agent holds key
+	 * @param haveAxe
+	 *            Agent holds axe
+	 * @param numDyna
+	 *            Agent has number of dynamites
+	 * @param haveRaft
+	 *            Agent has a raft
+	 * @param usingRaft
+	 *            Agent is using the raft
+	 * @return cost model
+	 */
+	public static CostModel island(boolean haveKey, boolean haveAxe, int numDyna, boolean haveRaft,
+			boolean usingRaft) {
+		CostModel model = withItems(1, haveKey, haveAxe, numDyna, haveRaft, usingRaft);
+		model.add(WorldModel.OBSTACLE_WATER, -1);
+		if (haveAxe)
+			model.add(WorldModel.OBSTACLE_TREE, 2);
+		return model;
+	}
+
+	/**
+	 * Agent crossed waters and wants to go back home through the water, land
+	 * and water cost 2, blasting walls a lot and the treasure is a win
+	 *
+	 * @param haveKey
+	 *            Agent holds key
+	 * @return cost model
+	 */
+	public static CostModel river(boolean haveKey) {
+		CostModel model = withItems(1, haveKey, true, 1, true, true);
+		model.add(WorldModel.OBSTACLE_SPACE, 1);
+		model.add(WorldModel.OBSTACLE_WATER, 1);
+		model.add(WorldModel.OBSTACLE_TREE, 2);
+		model.add(WorldModel.OBSTACLE_WALL, 160);
+		model.add(WorldModel.TOOL_TREASURE, -160);
+		return model;
+	}
+
+	/**
+	 * Agent is using raft and wants to use dynamite to blow up walls, water is
+	 * made much cheaper because of islands/rivers
+	 *
+	 * @param haveKey
+	 *            Agent holds key
+	 * @param haveAxe
+	 *            Agent holds axe
+	 * @param numDyna
+	 *            Agent has number of dynamites
+	 * @param haveRaft
+	 *            Agent has a raft
+	 * @param usingRaft
+	 *            Agent is using the raft
+	 * @return cost model
+	 */
+	public static CostModel dynamite(boolean haveKey, boolean haveAxe, int numDyna, boolean haveRaft,
+			boolean usingRaft) {
+		CostModel model = new CostModel();
+		model.passing(1, haveKey, haveAxe, numDyna, haveRaft, usingRaft);
+		if (haveRaft) {
+			// Water costs a bit more, then the raft is in use, which makes it
+			// much cheaper
+			model.add(WorldModel.OBSTACLE_WATER, 1 - 50);
+		} else if (usingRaft) {
+			model.add(WorldModel.OBSTACLE_WATER, -50);
+		}
+		model.add(WorldModel.OBSTACLE_WALL, 100);
+		model.bucketQueue = true;
+		return model;
+	}
+
+	/**
+	 * Agent is travelling from water to water
+	 *
+	 * @return cost model
+	 */
+	public static CostModel water() {
+		CostModel model = new CostModel();
+		for (char tile = 0; tile < NUM_TILES; tile++) {
+			if (WorldModel.tilePassWater(tile))
+				model.stepCost[tile] = 1;
+		}
+		return model;
+	}
+
+	/**
+	 * Agent is first travelling to their first water tile
+	 *
+	 * @param haveKey
+	 *            Agent holds key
+	 * @param haveAxe
+	 *            Agent holds axe
+	 * @return cost model
+	 */
+	public static CostModel firstWater(boolean haveKey, boolean haveAxe) {
+		return withItems(1, haveKey, haveAxe, 0, true, false);
+	}
+
+	/**
+	 * Agent wants to know if a raft is needed to reach a goal, moving is free
+	 * and trees and walls cost 160
+	 *
+	 * @return cost model
+	 */
+	public static CostModel theoreticalRaft() {
+		CostModel model = withItems(0, false, false, 0, true, true);
+		model.add(WorldModel.OBSTACLE_TREE, 160);
+		model.add(WorldModel.OBSTACLE_WALL, 160);
+		model.bucketQueue = true;
+		return model;
+	}
+
+	/**
+	 * Agent wants to know if dynamites are needed to reach a goal, moving is
+	 * free, trees and walls cost 160, water 320 and dynamite is a gain of 160
+	 *
+	 * @return cost model
+	 */
+	public static CostModel theoreticalDyna() {
+		CostModel model = new CostModel();
+		model.passing(0, true, true, 1, true, true);
+		model.add(WorldModel.OBSTACLE_WALL, 160);
+		model.add(WorldModel.TOOL_DYNAMITE, -160);
+		model.add(WorldModel.OBSTACLE_TREE, 160);
+		model.add(WorldModel.OBSTACLE_WATER, 320);
+		return model;
+	}
+
+	/**
+	 * Same costs, searched with the given open list
+	 *
+	 * @param buckets
+	 *            true for a bucket queue, false for a binary heap
+	 * @return cost model
+	 */
+	public CostModel withBucketQueue(boolean buckets) {
+		CostModel model = copy();
+		model.bucketQueue = buckets;
+		return model;
+	}
+
+	/**
+	 * Model with the same costs and search settings
+	 */
+	private CostModel copy() {
+		CostModel model = new CostModel();
+		System.arraycopy(stepCost, 0, model.stepCost, 0, NUM_TILES);
+		model.bucketQueue = bucketQueue;
+		return model;
+	}
+
+	/**
+	 * Models are equal if they cost the same and are searched the same way
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof CostModel))
+			return false;
+		CostModel other = (CostModel) o;
+		return bucketQueue == other.bucketQueue && Arrays.equals(stepCost, other.stepCost);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Arrays.hashCode(stepCost) + (bucketQueue ? 1 : 0);
+	}
+
+	/**
+	 * Model with tiles passable given items costing the same
+	 */
+	private static CostModel withItems(int cost, boolean haveKey, boolean haveAxe, int numDyna, boolean haveRaft,
+			boolean usingRaft) {
+		CostModel model = new CostModel();
+		for (char tile = 0; tile < NUM_TILES; tile++) {
+			if (WorldModel.tilePassWithItem(tile, haveKey, haveAxe, numDyna, haveRaft, usingRaft))
+				model.stepCost[tile] = cost;
+		}
+		return model;
+	}
+
+	/**
+	 * Makes tiles passable given items (dynamite rules) cost the same
+	 */
+	private void passing(int cost, boolean haveKey, boolean haveAxe, int numDyna, boolean haveRaft,
+			boolean usingRaft) {
+		for (char tile = 0; tile < NUM_TILES; tile++) {
+			if (WorldModel.tilePassDynamite(tile, haveKey, haveAxe, numDyna, haveRaft, usingRaft))
+				stepCost[tile] = cost;
+		}
+	}
+
+	/**
+	 * Changes the cost of a tile, if it can be passed
+	 */
+	private void add(char tile, int delta) {
+		if (stepCost[tile] != IMPASSABLE)
+			stepCost[tile] += delta;
+	}
+}
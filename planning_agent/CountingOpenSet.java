@@ -0,0 +1,78 @@
+/**
+ * Representation of CountingOpenSet class Open set that counts the pushes,
+ * pops and peak size of the open set it wraps into a SearchStats. Searches
+ * only wrap their open set when asked to record, so the others pay nothing,
+ * and each SearchContext keeps one wrapper that every search in it reuses
+ *
+ * @author bennygmate
+ */
+public class CountingOpenSet implements OpenSet {
+	private OpenSet openSet;
+	private SearchStats stats;
+
+	/**
+	 * Constructor
+	 *
+	 * @param openSet
+	 *            open set to count the use of
+	 * @param stats
+	 *            counters to add to
+	 */
+	public CountingOpenSet(OpenSet openSet, SearchStats stats) {
+		this.openSet = openSet;
+		this.stats = stats;
+	}
+
+	/**
+	 * Wraps another open set, counting into other stats
+	 *
+	 * @param openSet
+	 *            open set to count the use of
+	 * @param stats
+	 *            counters to add to
+	 * @return this wrapper
+	 */
+	public CountingOpenSet watch(OpenSet openSet, SearchStats stats) {
+		this.openSet = openSet;
+		this.stats = stats;
+		return this;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return openSet.isEmpty();
+	}
+
+	@Override
+	public int size() {
+		return openSet.size();
+	}
+
+	@Override
+	public boolean contains(int index) {
+		return openSet.contains(index);
+	}
+
+	@Override
+	public int minKey() {
+		return openSet.minKey();
+	}
+
+	@Override
+	public void push(int index, int newKey) {
+		boolean isNew = !openSet.contains(index);
+		openSet.push(index, newKey);
+		stats.push(isNew, openSet.size());
+	}
+
+	@Override
+	public int poll() {
+		stats.pop();
+		return openSet.poll();
+	}
+
+	@Override
+	public void clear() {
+		openSet.clear();
+	}
+}
@@ -0,0 +1,356 @@
+import java.util.Arrays;
+
+/**
+ * Representation of DistanceField class Moves from every known tile to one
+ * source tile (home), kept from one planner decision to the next instead of
+ * searching toward the source again each time. Answers whether the source
+ * can be reached from a tile, in how many moves and by which next step, and
+ * the moves left are an exact heuristic for any search heading there
+ *
+ * The field is repaired from the world model's change log. Almost every
+ * change only opens tiles up (unseen tiles turning into land, trees, doors
+ * and walls going), which can only bring distances down, so the opened tiles
+ * are given a distance from their neighbours and the drop is passed on from
+ * there. A tile closing (the agent leaving a water tile behind) is cleared on
+ * its own if no other tile leans on it, anything else, or a change in the
+ * items held, rebuilds the field
+ *
+ * @author bennygmate
+ */
+public class DistanceField {
+	// Distance of a tile that can't reach the source
+	final static int INFINITY = SearchContext.INFINITY;
+	// Turns from the agent's direction, fewest first
+	private final static int[] TURNS = { 0, 1, 3, 2 };
+	private final WorldModel wm;
+	private final int source;
+	// Map, pass classes and map version the field is up to date with
+	private TileMap map;
+	private int passClasses;
+	private int version;
+	// Moves to the source, by TileMap index
+	private int[] distance;
+	// Ring of tiles whose drop still has to be passed on
+	private int[] openQ;
+	private boolean[] queued;
+	private int rebuilds;
+	private int repairs;
+	// Counters the builds and repairs add to, null to not count
+	private SearchStats stats;
+
+	/**
+	 * Constructor, the field is built on the first query
+	 *
+	 * @param wm
+	 *            world model whose map the field covers
+	 * @param source
+	 *            packed coordinate distances are measured to
+	 */
+	public DistanceField(WorldModel wm, int source) {
+		this.wm = wm;
+		this.source = source;
+		this.map = null;
+		this.passClasses = -1;
+		this.version = -1;
+		this.distance = new int[0];
+		this.openQ = new int[0];
+		this.queued = new boolean[0];
+		this.rebuilds = 0;
+		this.repairs = 0;
+		this.stats = null;
+	}
+
+	/**
+	 * Moves from point to the source, same as a reach test from point
+	 * (AgentReach) when it is not INFINITY
+	 *
+	 * @param point
+	 *            packed coordinate to measure from
+	 * @param passClasses
+	 *            bitmask of tile classes that can be passed (WorldModel
+	 *            passClasses)
+	 * @return moves to the source, INFINITY if it can't be reached
+	 */
+	public int distance(int point, int passClasses) {
+		update(passClasses);
+		if (point == source)
+			return 0;
+		// The tile moved from doesn't have to be passable itself
+		if (passable(point))
+			return distanceAt(point);
+		return bestNeighbour(point);
+	}
+
+	/**
+	 * Moves from point to the source over passable tiles only, the exact
+	 * distance between the two in the graph of passable tiles
+	 *
+	 * @param point
+	 *            packed coordinate to measure from
+	 * @param passClasses
+	 *            bitmask of tile classes that can be passed
+	 * @return moves to the source, INFINITY if point can't be passed or can't
+	 *         reach the source
+	 */
+	public int passableDistance(int point, int passClasses) {
+		update(passClasses);
+		if (!passable(point))
+			return INFINITY;
+		return distanceAt(point);
+	}
+
+	/**
+	 * @param point
+	 *            packed coordinate to test from
+	 * @param passClasses
+	 *            bitmask of tile classes that can be passed
+	 * @return true if the source can be reached from point
+	 */
+	public boolean reaches(int point, int passClasses) {
+		return distance(point, passClasses) != INFINITY;
+	}
+
+	/**
+	 * @param point
+	 *            packed coordinate to step from
+	 * @param passClasses
+	 *            bitmask of tile classes that can be passed
+	 * @param curDirection
+	 *            direction agent is facing, kept where steps are as close
+	 * @return neighbour of point one move closer to the source, Coord.NONE at
+	 *         the source or if it can't be reached
+	 */
+	public int nextStep(int point, int passClasses, int curDirection) {
+		int moves = distance(point, passClasses);
+		if (moves == 0 || moves == INFINITY)
+			return Coord.NONE;
+		for (int turn : TURNS) {
+			int nextPoint = point + Coord.step((curDirection + turn) % 4);
+			if (nextPoint == source || (passable(nextPoint) && distanceAt(nextPoint) == moves - 1))
+				return nextPoint;
+		}
+		return Coord.NONE;
+	}
+
+	/**
+	 * @return number of times the field was built from scratch
+	 */
+	public int getRebuilds() {
+		return rebuilds;
+	}
+
+	/**
+	 * @return number of times the field was repaired in place
+	 */
+	public int getRepairs() {
+		return repairs;
+	}
+
+	/**
+	 * Sets counters for the builds and repairs to add to, each one counts as
+	 * a search that finds no path
+	 *
+	 * @param stats
+	 *            counters to add to, null to not count
+	 */
+	public void setStats(SearchStats stats) {
+		this.stats = stats;
+	}
+
+	/**
+	 * Brings the field up to date with the map and pass classes
+	 */
+	private void update(int passClasses) {
+		if (passClasses != this.passClasses) {
+			rebuild(passClasses);
+			return;
+		}
+		if (wm.getMapVersion() == version)
+			return;
+		int[] changed = wm.changesSince(version);
+		if (changed == null) {
+			rebuild(passClasses);
+			return;
+		}
+		long started = System.nanoTime();
+		map = wm.getMap();
+		version = wm.getMapVersion();
+		grow();
+		// Tiles closed, only one that no other tile leans on is cleared here
+		int closed = Coord.NONE;
+		for (int tile : changed) {
+			if (tile == closed || passable(tile) || distanceAt(tile) == INFINITY)
+				continue;
+			if (closed != Coord.NONE || !leanedOn(tile)) {
+				rebuild(passClasses);
+				return;
+			}
+			closed = tile;
+		}
+		if (closed != Coord.NONE)
+			distance[map.index(closed)] = INFINITY;
+		// Tiles opened, given a distance from their neighbours
+		int head = 0;
+		int tail = 0;
+		for (int tile : changed) {
+			int index = map.index(tile);
+			if (!passable(tile) || distance[index] != INFINITY)
+				continue;
+			int moves = (tile == source) ? 0 : bestNeighbour(tile);
+			if (moves == INFINITY)
+				continue;
+			distance[index] = moves;
+			if (!queued[index])
+				tail = enqueue(tile, index, head, tail);
+		}
+		// Pass the drop on until nothing gets closer, a tile is queued at
+		// most once at a time
+		while (head != tail) {
+			int firstPoint = openQ[head];
+			head = (head + 1) % openQ.length;
+			int firstIndex = map.index(firstPoint);
+			queued[firstIndex] = false;
+			if (stats != null) {
+				stats.pop();
+				stats.expand();
+			}
+			int moves = distance[firstIndex] + 1;
+			for (int step : Coord.PLUS) {
+				int nextPoint = firstPoint + step;
+				int nextIndex = map.index(nextPoint);
+				if (!passable(nextPoint) || distance[nextIndex] <= moves)
+					continue;
+				distance[nextIndex] = moves;
+				if (!queued[nextIndex])
+					tail = enqueue(nextPoint, nextIndex, head, tail);
+			}
+		}
+		repairs++;
+		if (stats != null)
+			stats.finish(0, started);
+	}
+
+	/**
+	 * Adds a tile to the repair ring
+	 *
+	 * @return new tail of the ring
+	 */
+	private int enqueue(int point, int index, int head, int tail) {
+		queued[index] = true;
+		openQ[tail] = point;
+		tail = (tail + 1) % openQ.length;
+		if (stats != null)
+			stats.push(true, (tail - head + openQ.length) % openQ.length);
+		return tail;
+	}
+
+	/**
+	 * Breadth first search out from the source over passable tiles
+	 */
+	private void rebuild(int passClasses) {
+		long started = System.nanoTime();
+		this.passClasses = passClasses;
+		this.map = wm.getMap();
+		this.version = wm.getMapVersion();
+		distance = new int[0];
+		grow();
+		rebuilds++;
+		int head = 0;
+		int tail = 0;
+		if (passable(source)) {
+			openQ[tail++] = source;
+			distance[map.index(source)] = 0;
+		}
+		while (head < tail) {
+			int firstPoint = openQ[head++];
+			if (stats != null) {
+				stats.pop();
+				stats.expand();
+			}
+			int moves = distance[map.index(firstPoint)] + 1;
+			// Add west, east, north, south tiles, like a plus sign
+			for (int step : Coord.PLUS) {
+				int nextPoint = firstPoint + step;
+				int nextIndex = map.index(nextPoint);
+				if (!passable(nextPoint) || distance[nextIndex] != INFINITY)
+					continue;
+				distance[nextIndex] = moves;
+				openQ[tail++] = nextPoint;
+				if (stats != null)
+					stats.push(true, tail - head);
+			}
+		}
+		if (stats != null)
+			stats.finish(0, started);
+	}
+
+	/**
+	 * @return true if a neighbour of tile has tile as its only way one move
+	 *         closer to the source
+	 */
+	private boolean leanedOn(int tile) {
+		if (tile == source)
+			return true;
+		int moves = distanceAt(tile);
+		for (int step : Coord.PLUS) {
+			int nextPoint = tile + step;
+			if (!passable(nextPoint) || distanceAt(nextPoint) != moves + 1)
+				continue;
+			boolean otherWay = false;
+			for (int otherStep : Coord.PLUS) {
+				int otherPoint = nextPoint + otherStep;
+				if (otherPoint != tile && passable(otherPoint) && distanceAt(otherPoint) == moves) {
+					otherWay = true;
+					break;
+				}
+			}
+			if (!otherWay)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return one more than the closest passable neighbour of point, INFINITY
+	 *         if none can reach the source
+	 */
+	private int bestNeighbour(int point) {
+		int best = INFINITY;
+		for (int step : Coord.PLUS) {
+			int nextPoint = point + step;
+			if (passable(nextPoint) && distanceAt(nextPoint) != INFINITY)
+				best = Math.min(best, distanceAt(nextPoint) + 1);
+		}
+		return best;
+	}
+
+	/**
+	 * @return distance of a passable tile
+	 */
+	private int distanceAt(int point) {
+		return distance[map.index(point)];
+	}
+
+	/**
+	 * @return true if point can be passed, tiles never seen can't
+	 */
+	private boolean passable(int point) {
+		return map.index(point) >= 0 && (passClasses & (1 << WorldModel.tileClass(map.get(point)))) != 0;
+	}
+
+	/**
+	 * Fits the per tile arrays to the map, new tiles start unreachable
+	 */
+	private void grow() {
+		int size = map.size();
+		if (distance.length == size)
+			return;
+		int[] grown = new int[size];
+		Arrays.fill(grown, distance.length, size, INFINITY);
+		System.arraycopy(distance, 0, grown, 0, distance.length);
+		distance = grown;
+		// One spare slot so a full ring isn't mistaken for an empty one
+		openQ = new int[size + 1];
+		queued = new boolean[size];
+	}
+}
@@ -0,0 +1,25 @@
+/**
+ * Representation of Heuristic interface Estimate of the cost left from a tile
+ * to the goal of a search. AStar orders its open set by g cost plus this, so
+ * the closer it is to the real cost the fewer tiles are expanded
+ *
+ * @author bennygmate
+ */
+public interface Heuristic {
+	// Manhattan distance, never more than the moves left where every step
+	// costs at least 1
+	Heuristic MANHATTAN = (point, goal) -> Coord.manhattan(point, goal);
+
+	/**
+	 * Has to be a lower bound on the cost of the cheapest path for every
+	 * cost model it is searched with, and consistent (never dropping by more
+	 * than a step costs) for searches that close tiles
+	 *
+	 * @param point
+	 *            packed coordinate to estimate from
+	 * @param goal
+	 *            packed coordinate of the goal
+	 * @return estimated cost from point to goal
+	 */
+	int estimate(int point, int goal);
+}
@@ -0,0 +1,180 @@
+import java.util.Arrays;
+
+/**
+ * Representation of IndexedHeap class Binary min heap of tile indices
+ * (TileMap index) ordered by an int key. Each tile knows where it sits in the
+ * heap, so membership is a lookup and a tile's key can be lowered in place
+ * instead of being searched for. Equal keys come out in no set order unless
+ * the heap is made to take the lower index first
+ *
+ * @author bennygmate
+ */
+public class IndexedHeap implements OpenSet {
+	// Tile indices in heap order
+	private int[] heap;
+	private int size;
+	// Key and heap position of each tile, position -1 if not in the heap
+	private int[] key;
+	private int[] position;
+	// Whether equal keys are taken lower index first
+	private final boolean lowerFirst;
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity
+	 *            number of tile indices, every index is below this
+	 */
+	public IndexedHeap(int capacity) {
+		this(capacity, false);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity
+	 *            number of indices, every index is below this
+	 * @param lowerFirst
+	 *            true to take equal keys lower index first (oldest first
+	 *            where indices are handed out in order)
+	 */
+	public IndexedHeap(int capacity, boolean lowerFirst) {
+		this.lowerFirst = lowerFirst;
+		this.heap = new int[Math.max(capacity, 1)];
+		this.size = 0;
+		this.key = new int[capacity];
+		this.position = new int[capacity];
+		Arrays.fill(position, -1);
+	}
+
+	/**
+	 * @return true if no tiles are in the heap
+	 */
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return number of tiles in the heap
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param index
+	 *            tile index
+	 * @return true if the tile is in the heap
+	 */
+	@Override
+	public boolean contains(int index) {
+		return position[index] >= 0;
+	}
+
+	/**
+	 * @Pre heap is not empty
+	 * @return smallest key in the heap
+	 */
+	@Override
+	public int minKey() {
+		return key[heap[0]];
+	}
+
+	/**
+	 * Adds a tile, or moves it to its new key if it is already in the heap
+	 *
+	 * @param index
+	 *            tile index
+	 * @param newKey
+	 *            key to order the tile by
+	 */
+	@Override
+	public void push(int index, int newKey) {
+		int at = position[index];
+		if (at < 0) {
+			at = size++;
+			heap[at] = index;
+			position[index] = at;
+			key[index] = newKey;
+			siftUp(at);
+		} else if (newKey < key[index]) {
+			key[index] = newKey;
+			siftUp(at);
+		} else if (newKey > key[index]) {
+			key[index] = newKey;
+			siftDown(at);
+		}
+	}
+
+	/**
+	 * Removes the tile with the smallest key
+	 *
+	 * @Pre heap is not empty
+	 * @return tile index
+	 */
+	@Override
+	public int poll() {
+		int top = heap[0];
+		position[top] = -1;
+		size--;
+		if (size > 0) {
+			heap[0] = heap[size];
+			position[heap[0]] = 0;
+			siftDown(0);
+		}
+		return top;
+	}
+
+	/**
+	 * Empties the heap, only touching the tiles still in it
+	 */
+	@Override
+	public void clear() {
+		for (int i = 0; i < size; i++)
+			position[heap[i]] = -1;
+		size = 0;
+	}
+
+	private void siftUp(int at) {
+		int index = heap[at];
+		while (at > 0) {
+			int parent = (at - 1) >>> 1;
+			int parentIndex = heap[parent];
+			if (!before(index, parentIndex))
+				break;
+			heap[at] = parentIndex;
+			position[parentIndex] = at;
+			at = parent;
+		}
+		heap[at] = index;
+		position[index] = at;
+	}
+
+	private void siftDown(int at) {
+		int index = heap[at];
+		while (true) {
+			int child = 2 * at + 1;
+			if (child >= size)
+				break;
+			if (child + 1 < size && before(heap[child + 1], heap[child]))
+				child++;
+			int childIndex = heap[child];
+			if (!before(childIndex, index))
+				break;
+			heap[at] = childIndex;
+			position[childIndex] = at;
+			at = child;
+		}
+		heap[at] = index;
+		position[index] = at;
+	}
+
+	/**
+	 * @return true if index a comes out before index b
+	 */
+	private boolean before(int a, int b) {
+		return key[a] < key[b] || (lowerFirst && key[a] == key[b] && a < b);
+	}
+}
@@ -0,0 +1,211 @@
+import java.util.Arrays;
+
+/**
+ * Representation of Islands class Labels the known map into islands (land
+ * passable without items) and water bodies, using union-find over TileMap
+ * indices. Tiles only ever join: an unseen tile turns into land or water, a
+ * tree, wall or door turns into land, and land and water never swap, so each
+ * revealed tile is a few unions and no labels are ever rebuilt
+ *
+ * The agent tile keeps whatever it was underneath, water while rafting and
+ * land otherwise
+ *
+ * Not safe to share between threads, even for reads: finding a root halves
+ * the path to it, which writes parent links
+ *
+ * @author bennygmate
+ */
+public class Islands {
+	// Terrain of a tile
+	final static byte TERRAIN_NONE = 0;
+	final static byte TERRAIN_LAND = 1;
+	final static byte TERRAIN_WATER = 2;
+	private final TileMap map;
+	// Per tile arrays, indexed by TileMap index
+	private byte[] terrain;
+	private int[] parent;
+	private int[] size;
+	// Tile the agent is on
+	private int agentTile;
+
+	/**
+	 * Constructor
+	 *
+	 * @param map
+	 *            agent map to label, tiles are passed in with tileChanged
+	 */
+	public Islands(TileMap map) {
+		this.map = map;
+		this.terrain = new byte[0];
+		this.parent = new int[0];
+		this.size = new int[0];
+		this.agentTile = Coord.NONE;
+	}
+
+	/**
+	 * Updates the labels for a tile that changed class, call after the tile is
+	 * written to the map
+	 *
+	 * @param tile
+	 *            packed coordinate of tile
+	 * @param tileChar
+	 *            tile representation now on the map
+	 */
+	public void tileChanged(int tile, char tileChar) {
+		if (terrain.length < map.size())
+			grow();
+		int index = map.index(tile);
+		byte newTerrain;
+		switch (WorldModel.tileClass(tileChar)) {
+		case WorldModel.CLASS_FREE:
+		case WorldModel.CLASS_TOOL:
+			newTerrain = TERRAIN_LAND;
+			break;
+		case WorldModel.CLASS_WATER:
+			newTerrain = TERRAIN_WATER;
+			break;
+		case WorldModel.CLASS_AGENT:
+			agentTile = tile;
+			// Agent always steps onto a tile it has seen, apart from the start
+			newTerrain = (terrain[index] == TERRAIN_NONE) ? TERRAIN_LAND : terrain[index];
+			break;
+		default:
+			newTerrain = TERRAIN_NONE;
+		}
+		// Terrain never goes back, so only new land or water needs labelling
+		if (terrain[index] != TERRAIN_NONE || newTerrain == TERRAIN_NONE)
+			return;
+		terrain[index] = newTerrain;
+		parent[index] = index;
+		size[index] = 1;
+		for (int step : Coord.PLUS) {
+			int next = map.index(tile + step);
+			if (next >= 0 && terrain[next] == newTerrain)
+				union(index, next);
+		}
+	}
+
+	/**
+	 * @param tile
+	 *            packed coordinate of tile
+	 * @return TERRAIN_LAND, TERRAIN_WATER or TERRAIN_NONE
+	 */
+	public byte terrain(int tile) {
+		int index = map.index(tile);
+		if (index < 0 || index >= terrain.length)
+			return TERRAIN_NONE;
+		return terrain[index];
+	}
+
+	/**
+	 * @param tile
+	 *            packed coordinate of tile
+	 * @return label shared by every tile of the same island or water body, -1
+	 *         if the tile is neither land nor water
+	 */
+	private int label(int tile) {
+		if (terrain(tile) == TERRAIN_NONE)
+			return -1;
+		return find(map.index(tile));
+	}
+
+	/**
+	 * Same answer as a seed fill over tiles passable without items (land and
+	 * the agent tile) from a land tile, without doing the fill
+	 *
+	 * @Pre start is land
+	 * @param start
+	 *            packed coordinate to fill from
+	 * @param end
+	 *            packed coordinate to reach
+	 * @return true if end is reachable from start
+	 */
+	public boolean landReach(int start, int end) {
+		if (start == end)
+			return true;
+		int root = label(start);
+		if (terrain(end) == TERRAIN_LAND && label(end) == root)
+			return true;
+		// A rafting agent's tile still passes as land, joining the islands
+		// around it
+		if (terrain(agentTile) != TERRAIN_WATER || !touchesAgent(TERRAIN_LAND, root))
+			return false;
+		return end == agentTile || (terrain(end) == TERRAIN_LAND && touchesAgent(TERRAIN_LAND, label(end)));
+	}
+
+	/**
+	 * Same answer as a seed fill over water and the agent tile from the agent
+	 * tile, without doing the fill
+	 *
+	 * @param end
+	 *            packed coordinate to reach
+	 * @return true if end is reachable from the agent by water
+	 */
+	public boolean waterReach(int end) {
+		if (end == agentTile)
+			return true;
+		if (terrain(end) != TERRAIN_WATER)
+			return false;
+		if (terrain(agentTile) == TERRAIN_WATER)
+			return label(end) == label(agentTile);
+		// From land the agent can launch into any water next to it
+		return touchesAgent(TERRAIN_WATER, label(end));
+	}
+
+	/**
+	 * @return packed coordinate of the agent tile
+	 */
+	public int getAgentTile() {
+		return agentTile;
+	}
+
+	/**
+	 * @return true if a tile next to the agent has the given terrain and label
+	 */
+	private boolean touchesAgent(byte wanted, int wantedLabel) {
+		for (int step : Coord.PLUS) {
+			int next = agentTile + step;
+			if (terrain(next) == wanted && label(next) == wantedLabel)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Root of a tile's set, halving the path on the way up
+	 */
+	private int find(int index) {
+		while (parent[index] != index) {
+			parent[index] = parent[parent[index]];
+			index = parent[index];
+		}
+		return index;
+	}
+
+	/**
+	 * Joins two sets, smaller under larger
+	 */
+	private void union(int a, int b) {
+		int rootA = find(a);
+		int rootB = find(b);
+		if (rootA == rootB)
+			return;
+		if (size[rootA] < size[rootB]) {
+			int tmp = rootA;
+			rootA = rootB;
+			rootB = tmp;
+		}
+		parent[rootB] = rootA;
+		size[rootA] += size[rootB];
+	}
+
+	/**
+	 * Grows the per tile arrays to cover every tile of the map
+	 */
+	private void grow() {
+		int newSize = map.size();
+		terrain = Arrays.copyOf(terrain, newSize);
+		parent = Arrays.copyOf(parent, newSize);
+		size = Arrays.copyOf(size, newSize);
+	}
+}
@@ -0,0 +1,152 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Representation of Landmarks class Landmark heuristic (ALT) for searches
+ * where every step costs 1. A few tiles are picked as landmarks (home, the
+ * treasure, tools) and the moves from every known tile to each of them are
+ * kept in a DistanceField, one per landmark and pass classes (items held),
+ * so they are repaired as the map is revealed rather than searched again
+ *
+ * By the triangle inequality the moves between two tiles are at least how
+ * much further one of them is from a landmark than the other. Round water
+ * and through wall mazes that is far more than the Manhattan distance, which
+ * only knows the straight line, so searches open much less of the map
+ *
+ * @author bennygmate
+ */
+public class Landmarks {
+	// Most landmarks kept, each is a distance field per pass classes
+	final static int MAX_LANDMARKS = 4;
+	private final WorldModel wm;
+	private final List<Integer> points;
+	// Distance fields by pass classes, in points order
+	private final Map<Integer, List<DistanceField>> fields;
+	// Counters every field's builds and repairs add to, null to not count
+	private SearchStats stats;
+
+	/**
+	 * Constructor
+	 *
+	 * @param wm
+	 *            world model whose map the distances cover
+	 */
+	public Landmarks(WorldModel wm) {
+		this.wm = wm;
+		this.points = new ArrayList<>();
+		this.fields = new HashMap<>();
+		this.stats = null;
+	}
+
+	/**
+	 * Adds a landmark, unless it is one already or there are MAX_LANDMARKS
+	 *
+	 * @param point
+	 *            packed coordinate of the landmark
+	 * @return true if it was added
+	 */
+	public boolean add(int point) {
+		if (points.size() >= MAX_LANDMARKS || points.contains(point))
+			return false;
+		points.add(point);
+		for (Map.Entry<Integer, List<DistanceField>> entry : fields.entrySet())
+			entry.getValue().add(newField(point));
+		return true;
+	}
+
+	/**
+	 * @return number of landmarks
+	 */
+	public int size() {
+		return points.size();
+	}
+
+	/**
+	 * Sets counters for the distance fields to add their builds and repairs
+	 * to, the ones made later included
+	 *
+	 * @param stats
+	 *            counters to add to, null to not count
+	 */
+	public void setStats(SearchStats stats) {
+		this.stats = stats;
+		for (List<DistanceField> layer : fields.values()) {
+			for (DistanceField field : layer)
+				field.setStats(stats);
+		}
+	}
+
+	/**
+	 * Heuristic for searches over passClasses, the distance fields it needs
+	 * are made on first use
+	 *
+	 * @Pre searched with a cost model passing the tiles in passClasses, and
+	 *      only them, at a cost of 1 (CostModel.search)
+	 * @param passClasses
+	 *            bitmask of tile classes that can be passed (WorldModel
+	 *            passClasses)
+	 * @return the landmark estimate, never below the Manhattan distance
+	 */
+	public Heuristic forPassClasses(int passClasses) {
+		List<DistanceField> landmarkFields = layer(passClasses);
+		return (point, goal) -> estimate(landmarkFields, passClasses, point, goal);
+	}
+
+	/**
+	 * Moves to one landmark, the same field the heuristic reads
+	 *
+	 * @Pre point was added as a landmark
+	 * @param point
+	 *            packed coordinate of the landmark
+	 * @param passClasses
+	 *            bitmask of tile classes that can be passed
+	 * @return distance field to point over passClasses
+	 */
+	public DistanceField field(int point, int passClasses) {
+		return layer(passClasses).get(points.indexOf(point));
+	}
+
+	/**
+	 * @return distance fields over passClasses in points order, made on first
+	 *         use
+	 */
+	private List<DistanceField> layer(int passClasses) {
+		List<DistanceField> layer = fields.get(passClasses);
+		if (layer == null) {
+			layer = new ArrayList<>();
+			for (int point : points)
+				layer.add(newField(point));
+			fields.put(passClasses, layer);
+		}
+		return layer;
+	}
+
+	/**
+	 * @return distance field to a landmark, counting into stats
+	 */
+	private DistanceField newField(int point) {
+		DistanceField field = new DistanceField(wm, point);
+		field.setStats(stats);
+		return field;
+	}
+
+	/**
+	 * Largest difference of the moves to a landmark, a start or goal that
+	 * can't be passed only has the Manhattan distance
+	 */
+	private static int estimate(List<DistanceField> landmarkFields, int passClasses, int point, int goal) {
+		int best = Coord.manhattan(point, goal);
+		for (DistanceField field : landmarkFields) {
+			int pointMoves = field.passableDistance(point, passClasses);
+			if (pointMoves == DistanceField.INFINITY)
+				continue;
+			int goalMoves = field.passableDistance(goal, passClasses);
+			if (goalMoves == DistanceField.INFINITY)
+				continue;
+			best = Math.max(best, Math.abs(pointMoves - goalMoves));
+		}
+		return best;
+	}
+}
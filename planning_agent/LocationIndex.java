@@ -0,0 +1,302 @@
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Representation of LocationIndex class Set of tile locations (packed
+ * coordinates) with constant time add, remove and contains. Locations are
+ * kept in the order they were first added, and are also grouped into square
+ * buckets of the map so the nearest location to a point can be found without
+ * looking at every location
+ *
+ * @author bennygmate
+ */
+public class LocationIndex {
+	// Buckets are BUCKET_SIZE x BUCKET_SIZE tiles
+	private final static int BUCKET_BITS = 3;
+	private final static int BUCKET_SIZE = 1 << BUCKET_BITS;
+	// Locations in insertion order, Coord.NONE where one was removed
+	private int[] order;
+	private int orderSize;
+	private int size;
+	// Next slot of order in the same bucket, -1 at the end of a bucket
+	private int[] nextInBucket;
+	// Location -> slot in order
+	private final IntTable slotOf;
+	// Bucket -> first slot of order in that bucket
+	private final IntTable bucketHead;
+	// Bounding box of buckets that have held a location
+	private int minBucketX;
+	private int maxBucketX;
+	private int minBucketY;
+	private int maxBucketY;
+
+	/**
+	 * Constructor
+	 */
+	public LocationIndex() {
+		this.order = new int[16];
+		this.nextInBucket = new int[16];
+		this.orderSize = 0;
+		this.size = 0;
+		this.slotOf = new IntTable();
+		this.bucketHead = new IntTable();
+		this.minBucketX = Integer.MAX_VALUE;
+		this.maxBucketX = Integer.MIN_VALUE;
+		this.minBucketY = Integer.MAX_VALUE;
+		this.maxBucketY = Integer.MIN_VALUE;
+	}
+
+	/**
+	 * @param location
+	 *            packed coordinate
+	 * @return true if location is in the set
+	 */
+	public boolean contains(int location) {
+		return slotOf.get(location) >= 0;
+	}
+
+	/**
+	 * Adds location to the end of the set, does nothing if already there
+	 *
+	 * @param location
+	 *            packed coordinate
+	 */
+	public void add(int location) {
+		if (contains(location))
+			return;
+		if (orderSize == order.length) {
+			if (size < orderSize / 2) {
+				compact();
+			} else {
+				order = Arrays.copyOf(order, orderSize * 2);
+				nextInBucket = Arrays.copyOf(nextInBucket, orderSize * 2);
+			}
+		}
+		int slot = orderSize++;
+		order[slot] = location;
+		slotOf.put(location, slot);
+		int bucket = bucketOf(location);
+		int head = bucketHead.get(bucket);
+		nextInBucket[slot] = head;
+		bucketHead.put(bucket, slot);
+		size++;
+		int bucketX = Coord.x(location) >> BUCKET_BITS;
+		int bucketY = Coord.y(location) >> BUCKET_BITS;
+		minBucketX = Math.min(minBucketX, bucketX);
+		maxBucketX = Math.max(maxBucketX, bucketX);
+		minBucketY = Math.min(minBucketY, bucketY);
+		maxBucketY = Math.max(maxBucketY, bucketY);
+	}
+
+	/**
+	 * Removes location from the set, does nothing if not there
+	 *
+	 * @param location
+	 *            packed coordinate
+	 */
+	public void remove(int location) {
+		int slot = slotOf.get(location);
+		if (slot < 0)
+			return;
+		slotOf.remove(location);
+		// Unlink from bucket, buckets only hold a few locations
+		int bucket = bucketOf(location);
+		int head = bucketHead.get(bucket);
+		if (head == slot) {
+			if (nextInBucket[slot] < 0)
+				bucketHead.remove(bucket);
+			else
+				bucketHead.put(bucket, nextInBucket[slot]);
+		} else {
+			int prev = head;
+			while (nextInBucket[prev] != slot)
+				prev = nextInBucket[prev];
+			nextInBucket[prev] = nextInBucket[slot];
+		}
+		order[slot] = Coord.NONE;
+		size--;
+	}
+
+	/**
+	 * @return number of locations in the set
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if the set holds no locations
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return locations in the order they were added
+	 */
+	public int[] toArray() {
+		int[] locations = new int[size];
+		int i = 0;
+		for (int slot = 0; slot < orderSize; slot++) {
+			if (order[slot] != Coord.NONE)
+				locations[i++] = order[slot];
+		}
+		return locations;
+	}
+
+	/**
+	 * Finds the location closest to a point (Manhattan distance) that passes
+	 * a test. Buckets are checked in rings around the point, and the search
+	 * stops once no bucket further out can hold anything closer
+	 *
+	 * @param from
+	 *            packed coordinate to measure from
+	 * @param accept
+	 *            test a location has to pass, null accepts all
+	 * @return nearest accepted location, Coord.NONE if none
+	 */
+	public int nearest(int from, IntPredicate accept) {
+		if (size == 0)
+			return Coord.NONE;
+		int fromBucketX = Coord.x(from) >> BUCKET_BITS;
+		int fromBucketY = Coord.y(from) >> BUCKET_BITS;
+		int maxRing = Math.max(Math.max(fromBucketX - minBucketX, maxBucketX - fromBucketX),
+				Math.max(fromBucketY - minBucketY, maxBucketY - fromBucketY));
+		int best = Coord.NONE;
+		int bestDistance = Integer.MAX_VALUE;
+		for (int ring = 0; ring <= maxRing; ring++) {
+			// Anything in this ring is at least this far away on one axis
+			if (ring > 0 && bestDistance <= (ring - 1) * BUCKET_SIZE)
+				break;
+			for (int bucketX = fromBucketX - ring; bucketX <= fromBucketX + ring; bucketX++) {
+				// Only the edge of the ring, inner buckets were done already
+				int stepY = (bucketX == fromBucketX - ring || bucketX == fromBucketX + ring) ? 1 : 2 * ring;
+				for (int bucketY = fromBucketY - ring; bucketY <= fromBucketY + ring; bucketY += stepY) {
+					for (int slot = bucketHead.get(bucketKey(bucketX, bucketY)); slot >= 0; slot = nextInBucket[slot]) {
+						int location = order[slot];
+						int distance = Coord.manhattan(from, location);
+						if (distance < bestDistance && (accept == null || accept.test(location))) {
+							best = location;
+							bestDistance = distance;
+						}
+					}
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Drops removed slots from the order array, keeping insertion order
+	 */
+	private void compact() {
+		int to = 0;
+		for (int from = 0; from < orderSize; from++) {
+			if (order[from] != Coord.NONE)
+				order[to++] = order[from];
+		}
+		orderSize = to;
+		// Slots moved, so rebuild both tables
+		slotOf.clear();
+		bucketHead.clear();
+		for (int slot = 0; slot < orderSize; slot++) {
+			slotOf.put(order[slot], slot);
+			int bucket = bucketOf(order[slot]);
+			nextInBucket[slot] = bucketHead.get(bucket);
+			bucketHead.put(bucket, slot);
+		}
+	}
+
+	private static int bucketOf(int location) {
+		return bucketKey(Coord.x(location) >> BUCKET_BITS, Coord.y(location) >> BUCKET_BITS);
+	}
+
+	private static int bucketKey(int bucketX, int bucketY) {
+		return Coord.pack(bucketX, bucketY);
+	}
+
+	/**
+	 * Open addressed int to int map with linear probing, values are never
+	 * negative and get() returns -1 for a missing key
+	 */
+	private static class IntTable {
+		private final static int EMPTY = Coord.NONE;
+		private int[] keys;
+		private int[] values;
+		private int count;
+
+		IntTable() {
+			keys = new int[16];
+			values = new int[16];
+			Arrays.fill(keys, EMPTY);
+		}
+
+		int get(int key) {
+			int mask = keys.length - 1;
+			for (int i = hash(key) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+				if (keys[i] == key)
+					return values[i];
+			}
+			return -1;
+		}
+
+		void put(int key, int value) {
+			if (2 * (count + 1) > keys.length)
+				resize();
+			int mask = keys.length - 1;
+			int i = hash(key) & mask;
+			while (keys[i] != EMPTY && keys[i] != key)
+				i = (i + 1) & mask;
+			if (keys[i] == EMPTY)
+				count++;
+			keys[i] = key;
+			values[i] = value;
+		}
+
+		void remove(int key) {
+			int mask = keys.length - 1;
+			int i = hash(key) & mask;
+			while (keys[i] != key) {
+				if (keys[i] == EMPTY)
+					return;
+				i = (i + 1) & mask;
+			}
+			// Shift later entries of the probe run back so lookups still
+			// find them
+			int gap = i;
+			for (int j = (gap + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+				int home = hash(keys[j]) & mask;
+				if (((j - home) & mask) >= ((j - gap) & mask)) {
+					keys[gap] = keys[j];
+					values[gap] = values[j];
+					gap = j;
+				}
+			}
+			keys[gap] = EMPTY;
+			count--;
+		}
+
+		void clear() {
+			Arrays.fill(keys, EMPTY);
+			count = 0;
+		}
+
+		private void resize() {
+			int[] oldKeys = keys;
+			int[] oldValues = values;
+			keys = new int[oldKeys.length * 2];
+			values = new int[oldKeys.length * 2];
+			Arrays.fill(keys, EMPTY);
+			count = 0;
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] != EMPTY)
+					put(oldKeys[i], oldValues[i]);
+			}
+		}
+
+		private static int hash(int key) {
+			int h = key * 0x9E3779B9;
+			return h ^ (h >>> 16);
+		}
+	}
+}
@@ -0,0 +1,156 @@
+import java.util.Arrays;
+
+/**
+ * Representation of MultiTargetSearch class One search from the start point
+ * out to many targets at once (tools, trees), in place of a reach test or A*
+ * per target. Every move costs 1 in the tests it replaces, so the search is a
+ * breadth first search, which is Dijkstra's algorithm for equal costs: tiles
+ * are settled nearest first, and once the k nearest targets are settled
+ * nothing further out can change the answer, so it stops there
+ *
+ * @author bennygmate
+ */
+public class MultiTargetSearch {
+	// Distance of a target that wasn't reached
+	final static int INFINITY = SearchContext.INFINITY;
+	// Per tile target marks
+	private final static byte TARGET = 1;
+	private final static byte SETTLED = 2;
+	private final int startPoint;
+	private final TileMap agentMap;
+	// Per tile arrays of the last search, indexed by TileMap index
+	private int[] distance;
+	private int[] parent;
+	private int numReached;
+	// Counters the searches add to, null to not count
+	private SearchStats stats;
+
+	/**
+	 * Constructor
+	 *
+	 * @param agentMap
+	 *            contains agent perception
+	 * @param startPoint
+	 *            point to search from
+	 */
+	public MultiTargetSearch(TileMap agentMap, int startPoint) {
+		this.agentMap = agentMap;
+		this.startPoint = startPoint;
+		this.distance = new int[0];
+		this.parent = new int[0];
+		this.numReached = 0;
+		this.stats = null;
+	}
+
+	/**
+	 * Sets counters for the searches to add their expansions, queue use and
+	 * time to
+	 *
+	 * @param stats
+	 *            counters to add to, null to not count
+	 */
+	public void setStats(SearchStats stats) {
+		this.stats = stats;
+	}
+
+	/**
+	 * Searches out from the start point over passable tiles until the k
+	 * nearest targets are settled or nothing more can be reached
+	 *
+	 * @param passClasses
+	 *            bitmask of tile classes that can be passed (WorldModel
+	 *            passClasses)
+	 * @param targets
+	 *            packed coordinates to find, a target has to be passable to
+	 *            be reached (as AgentReach)
+	 * @param k
+	 *            number of targets to settle before stopping, targets.length
+	 *            for all of them
+	 * @return moves to each target in targets order, INFINITY if it wasn't
+	 *         reached before the search stopped
+	 */
+	public int[] search(int passClasses, int[] targets, int k) {
+		long started = System.nanoTime();
+		int size = agentMap.size();
+		long[] passable = agentMap.layerMask(passClasses);
+		distance = new int[size];
+		parent = new int[size];
+		Arrays.fill(distance, INFINITY);
+		byte[] mark = new byte[size];
+		int numTargets = 0;
+		for (int target : targets) {
+			int index = agentMap.index(target);
+			if (index >= 0 && mark[index] == 0) {
+				mark[index] = TARGET;
+				numTargets++;
+			}
+		}
+		k = Math.min(k, numTargets);
+		numReached = 0;
+		// Queue of tiles in the order they are settled
+		int[] openQ = new int[size];
+		int head = 0;
+		int tail = 0;
+		int startIndex = agentMap.index(startPoint);
+		openQ[tail++] = startPoint;
+		distance[startIndex] = 0;
+		parent[startIndex] = Coord.NONE;
+		while (head < tail && numReached < k) {
+			int firstPoint = openQ[head++];
+			int firstIndex = agentMap.index(firstPoint);
+			if (stats != null) {
+				stats.pop();
+				stats.expand();
+			}
+			if (mark[firstIndex] == TARGET) {
+				mark[firstIndex] = SETTLED;
+				numReached++;
+			}
+			// Add west, east, north, south tiles, like a plus sign
+			for (int step : Coord.PLUS) {
+				int nextPoint = firstPoint + step;
+				int nextIndex = agentMap.index(nextPoint);
+				if (!TileMap.isSet(passable, nextIndex) || distance[nextIndex] != INFINITY)
+					continue;
+				distance[nextIndex] = distance[firstIndex] + 1;
+				parent[nextIndex] = firstPoint;
+				openQ[tail++] = nextPoint;
+				if (stats != null)
+					stats.push(true, tail - head);
+			}
+		}
+		// Only settled targets count, the queued ones past the k-th may not
+		// be the nearest
+		int[] targetDistance = new int[targets.length];
+		for (int i = 0; i < targets.length; i++) {
+			int index = agentMap.index(targets[i]);
+			targetDistance[i] = (index >= 0 && mark[index] == SETTLED) ? distance[index] : INFINITY;
+		}
+		if (stats != null)
+			stats.finish(0, started);
+		return targetDistance;
+	}
+
+	/**
+	 * @return number of targets the last search settled
+	 */
+	public int getNumReached() {
+		return numReached;
+	}
+
+	/**
+	 * @Pre target was reached by the last search
+	 * @param target
+	 *            packed coordinate of a target
+	 * @return path start to target in travel order without start
+	 */
+	public int[] getPath(int target) {
+		int[] path = new int[distance[agentMap.index(target)]];
+		int at = target;
+		for (int i = path.length - 1; i >= 0; i--) {
+			path[i] = at;
+			at = parent[agentMap.index(at)];
+		}
+		return path;
+	}
+}
@@ -0,0 +1,54 @@
+/**
+ * Representation of OpenSet interface Open list of a search, tile indices
+ * (TileMap index) ordered by an int key, smallest first. Keys of tiles already
+ * in the set can be changed in place
+ *
+ * @author bennygmate
+ */
+public interface OpenSet {
+	/**
+	 * @return true if no tiles are in the set
+	 */
+	boolean isEmpty();
+
+	/**
+	 * @return number of tiles in the set
+	 */
+	int size();
+
+	/**
+	 * @param index
+	 *            tile index
+	 * @return true if the tile is in the set
+	 */
+	boolean contains(int index);
+
+	/**
+	 * @Pre set is not empty
+	 * @return smallest key in the set
+	 */
+	int minKey();
+
+	/**
+	 * Adds a tile, or moves it to its new key if it is already in the set
+	 *
+	 * @param index
+	 *            tile index
+	 * @param newKey
+	 *            key to order the tile by
+	 */
+	void push(int index, int newKey);
+
+	/**
+	 * Removes a tile with the smallest key
+	 *
+	 * @Pre set is not empty
+	 * @return tile index
+	 */
+	int poll();
+
+	/**
+	 * Empties the set, only touching the tiles still in it
+	 */
+	void clear();
+}
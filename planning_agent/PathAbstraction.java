@@ -0,0 +1,506 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Representation of PathAbstraction class Hierarchical path finding (HPA*)
+ * over the agent map for travel where every step costs 1. The map is cut
+ * into CLUSTER_SIZE x CLUSTER_SIZE clusters. Where two clusters touch, each
+ * run of tiles passable on both sides gets one entrance (two, one at each
+ * end, for long runs), and each cluster keeps the moves between its own
+ * entrances. A long search then runs over the entrances only, and just the
+ * clusters on the route it picks are searched tile by tile to lay the path
+ *
+ * Clusters are worked out the first time a search reaches them, one set per
+ * pass classes (items held). A tile changing class drops its cluster, and
+ * the cluster across the border if the tile is on one, from every set, they
+ * are worked out again when next reached
+ *
+ * Paths found are at most a few moves longer than optimal, every crossing
+ * from a run is made at its entrance. The entrance search works in the
+ * thread's SearchContext, by TileMap index of the entrance tiles, and the
+ * searches inside a cluster share one set of cluster sized arrays
+ *
+ * @author bennygmate
+ */
+public class PathAbstraction {
+	final static int INFINITY = SearchContext.INFINITY;
+	// Clusters are CLUSTER_SIZE x CLUSTER_SIZE tiles
+	final static int CLUSTER_BITS = 4;
+	final static int CLUSTER_SIZE = 1 << CLUSTER_BITS;
+	// Runs at least this long get an entrance at each end
+	private final static int LONG_RUN = 6;
+	private final WorldModel wm;
+	// Map and map version the clusters are up to date with
+	private TileMap map;
+	private int version;
+	// Clusters by pass classes, then by packed cluster coordinate
+	private final Map<Integer, Map<Integer, Cluster>> layers;
+	// Path found by the last search, start to goal without start
+	private int[] successPath;
+	private int expanded;
+	// Arrays the searches inside a cluster work in, by tile in the cluster
+	private final int[] localMoves;
+	private final int[] localParent;
+	private final int[] localQueue;
+	// Counters the searches add to, null to not count
+	private SearchStats stats;
+
+	/**
+	 * Constructor
+	 *
+	 * @param wm
+	 *            world model whose map is searched
+	 */
+	public PathAbstraction(WorldModel wm) {
+		this.wm = wm;
+		this.map = wm.getMap();
+		this.version = wm.getMapVersion();
+		this.layers = new HashMap<>();
+		this.successPath = new int[0];
+		this.expanded = 0;
+		this.localMoves = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+		this.localParent = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+		this.localQueue = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+		this.stats = null;
+	}
+
+	/**
+	 * Sets counters for the searches to add to, entrances and the tiles of
+	 * the searches inside clusters (working clusters out included) count as
+	 * expanded
+	 *
+	 * @param stats
+	 *            counters to add to, null to not count
+	 */
+	public void setStats(SearchStats stats) {
+		this.stats = stats;
+	}
+
+	/**
+	 * Searches the entrances from start to goal, then lays the path through
+	 * the clusters on the route
+	 *
+	 * @param start
+	 *            packed coordinate to search from
+	 * @param goal
+	 *            packed coordinate to search to
+	 * @param passClasses
+	 *            bitmask of tile classes that can be passed (WorldModel
+	 *            passClasses)
+	 * @return moves of the path found, INFINITY if goal can't be reached
+	 */
+	public int search(int start, int goal, int passClasses) {
+		long started = System.nanoTime();
+		update();
+		int cost = find(start, goal, passClasses);
+		if (stats != null)
+			stats.finish(successPath.length, started);
+		return cost;
+	}
+
+	/**
+	 * Searches the entrances and lays the path into successPath
+	 */
+	private int find(int start, int goal, int passClasses) {
+		successPath = new int[0];
+		if (start == goal)
+			return 0;
+		if (!passable(goal, passClasses))
+			return INFINITY;
+		// The tile moved from doesn't have to be passable itself, but it may
+		// then be walled in on its own side of a border, so go from each
+		// neighbour instead
+		if (!passable(start, passClasses))
+			return searchFromNeighbours(start, goal, passClasses);
+		Map<Integer, Cluster> clusters = layers.get(passClasses);
+		if (clusters == null) {
+			clusters = new HashMap<>();
+			layers.put(passClasses, clusters);
+		}
+		Cluster startCluster = cluster(clusters, clusterOf(start), passClasses);
+		Cluster goalCluster = cluster(clusters, clusterOf(goal), passClasses);
+		// Moves from start to its cluster's entrances, and from the goal
+		// cluster's entrances to the goal, the goal is searched from as
+		// every step costs the same both ways
+		int[] fromStart = localDistances(start, startCluster, passClasses);
+		int[] toGoal = localDistances(goal, goalCluster, passClasses);
+		// Entrance search, nodes are entrance tiles
+		SearchContext context = SearchContext.forThread();
+		context.begin(map.size());
+		OpenSet open = context.openSet(false, stats);
+		int bestCost = INFINITY;
+		// Same cluster, straight there may be best
+		if (startCluster == goalCluster) {
+			int direct = localPath(start, goal, startCluster, passClasses).length;
+			if (direct > 0)
+				bestCost = direct;
+		}
+		for (int i = 0; i < startCluster.numEntrances; i++) {
+			if (fromStart[i] == INFINITY)
+				continue;
+			relax(context, open, startCluster.tile[i], fromStart[i], start, goal);
+		}
+		int bestEntrance = Coord.NONE;
+		while (!open.isEmpty() && open.minKey() < bestCost) {
+			int index = open.poll();
+			int entrance = context.pointAt(index);
+			int cost = context.gCost(index);
+			expanded++;
+			if (stats != null)
+				stats.expand();
+			Cluster cluster = cluster(clusters, clusterOf(entrance), passClasses);
+			if (cluster == goalCluster) {
+				// Entrances are reached from across a border, where the other
+				// cluster has its own
+				int at = cluster.indexOf(entrance);
+				if (at >= 0 && toGoal[at] != INFINITY && cost + toGoal[at] < bestCost) {
+					bestCost = cost + toGoal[at];
+					bestEntrance = entrance;
+				}
+			}
+			for (int i = 0; i < cluster.numEntrances; i++) {
+				if (cluster.tile[i] != entrance)
+					continue;
+				// Across the border, one move
+				relax(context, open, cluster.link[i], cost + 1, entrance, goal);
+				// Through the cluster to its other entrances
+				for (int j = 0; j < cluster.numEntrances; j++) {
+					if (cluster.distance[i][j] != INFINITY)
+						relax(context, open, cluster.tile[j], cost + cluster.distance[i][j], entrance, goal);
+				}
+			}
+		}
+		if (bestCost == INFINITY)
+			return INFINITY;
+		if (bestEntrance == Coord.NONE) {
+			successPath = localPath(start, goal, startCluster, passClasses);
+			return bestCost;
+		}
+		// Entrances goal to start, then laid tile by tile start to goal
+		int numRoute = 2;
+		for (int at = bestEntrance; at != start; at = context.parent(map.index(at)))
+			numRoute++;
+		int[] route = new int[numRoute];
+		numRoute = 0;
+		route[numRoute++] = goal;
+		for (int at = bestEntrance; at != start; at = context.parent(map.index(at)))
+			route[numRoute++] = at;
+		route[numRoute++] = start;
+		int[] path = new int[bestCost];
+		int length = 0;
+		for (int r = numRoute - 1; r > 0; r--) {
+			int from = route[r];
+			int to = route[r - 1];
+			int[] leg;
+			if (Coord.manhattan(from, to) == 1 && clusterOf(from) != clusterOf(to))
+				leg = new int[] { to };
+			else
+				leg = localPath(from, to, cluster(clusters, clusterOf(to), passClasses), passClasses);
+			System.arraycopy(leg, 0, path, length, leg.length);
+			length += leg.length;
+		}
+		successPath = Arrays.copyOf(path, length);
+		return length;
+	}
+
+	/**
+	 * Searches from each passable neighbour of start and keeps the shortest
+	 */
+	private int searchFromNeighbours(int start, int goal, int passClasses) {
+		int bestCost = INFINITY;
+		int[] bestPath = new int[0];
+		for (int step : Coord.PLUS) {
+			int nextPoint = start + step;
+			if (!passable(nextPoint, passClasses))
+				continue;
+			int cost = find(nextPoint, goal, passClasses);
+			if (cost != INFINITY && cost + 1 < bestCost) {
+				bestCost = cost + 1;
+				bestPath = new int[bestCost];
+				bestPath[0] = nextPoint;
+				System.arraycopy(successPath, 0, bestPath, 1, successPath.length);
+			}
+		}
+		successPath = bestPath;
+		return bestCost;
+	}
+
+	/**
+	 * @return path found by the last search, start to goal without start
+	 */
+	public int[] getSuccessPath() {
+		return successPath;
+	}
+
+	/**
+	 * @return entrances expanded over every search so far
+	 */
+	public int getExpanded() {
+		return expanded;
+	}
+
+	/**
+	 * @return number of clusters worked out and kept, over every pass classes
+	 */
+	public int numClusters() {
+		int count = 0;
+		for (Map<Integer, Cluster> clusters : layers.values())
+			count += clusters.size();
+		return count;
+	}
+
+	/**
+	 * Drops the clusters holding a tile that changed since the last search,
+	 * all of them if the change log doesn't go back that far
+	 */
+	private void update() {
+		if (wm.getMapVersion() == version)
+			return;
+		int[] changed = wm.changesSince(version);
+		map = wm.getMap();
+		version = wm.getMapVersion();
+		if (changed == null) {
+			layers.clear();
+			return;
+		}
+		for (int tile : changed) {
+			int x = Coord.x(tile);
+			int y = Coord.y(tile);
+			int cx = x >> CLUSTER_BITS;
+			int cy = y >> CLUSTER_BITS;
+			int lx = x & (CLUSTER_SIZE - 1);
+			int ly = y & (CLUSTER_SIZE - 1);
+			for (Map<Integer, Cluster> clusters : layers.values()) {
+				clusters.remove(Coord.pack(cx, cy));
+				// Entrances on a border belong to both sides
+				if (lx == 0)
+					clusters.remove(Coord.pack(cx - 1, cy));
+				if (lx == CLUSTER_SIZE - 1)
+					clusters.remove(Coord.pack(cx + 1, cy));
+				if (ly == 0)
+					clusters.remove(Coord.pack(cx, cy - 1));
+				if (ly == CLUSTER_SIZE - 1)
+					clusters.remove(Coord.pack(cx, cy + 1));
+			}
+		}
+	}
+
+	/**
+	 * Lowers the g cost of an entrance if this way is cheaper, and queues it
+	 * by f cost
+	 */
+	private void relax(SearchContext context, OpenSet open, int entrance, int cost, int from, int goal) {
+		int index = map.index(entrance);
+		if (cost >= context.gCost(index))
+			return;
+		context.reach(index, entrance, cost, from);
+		open.push(index, cost + Coord.manhattan(entrance, goal));
+	}
+
+	/**
+	 * @return packed coordinate of the cluster holding tile
+	 */
+	private static int clusterOf(int tile) {
+		return Coord.pack(Coord.x(tile) >> CLUSTER_BITS, Coord.y(tile) >> CLUSTER_BITS);
+	}
+
+	/**
+	 * @return the cluster, worked out if it isn't kept
+	 */
+	private Cluster cluster(Map<Integer, Cluster> clusters, int clusterCoord, int passClasses) {
+		Cluster cluster = clusters.get(clusterCoord);
+		if (cluster == null) {
+			cluster = build(clusterCoord, passClasses);
+			clusters.put(clusterCoord, cluster);
+		}
+		return cluster;
+	}
+
+	/**
+	 * Finds the entrances on the four borders of a cluster and the moves
+	 * between them
+	 */
+	private Cluster build(int clusterCoord, int passClasses) {
+		Cluster cluster = new Cluster(Coord.x(clusterCoord) << CLUSTER_BITS, Coord.y(clusterCoord) << CLUSTER_BITS);
+		int minX = cluster.minX;
+		int minY = cluster.minY;
+		int max = CLUSTER_SIZE - 1;
+		// West, east, south and north borders, inside tile and step across
+		addBorder(cluster, Coord.pack(minX, minY), Coord.step(WorldModel.NORTH), Coord.step(WorldModel.WEST),
+				passClasses);
+		addBorder(cluster, Coord.pack(minX + max, minY), Coord.step(WorldModel.NORTH), Coord.step(WorldModel.EAST),
+				passClasses);
+		addBorder(cluster, Coord.pack(minX, minY), Coord.step(WorldModel.EAST), Coord.step(WorldModel.SOUTH),
+				passClasses);
+		addBorder(cluster, Coord.pack(minX, minY + max), Coord.step(WorldModel.EAST), Coord.step(WorldModel.NORTH),
+				passClasses);
+		cluster.distance = new int[cluster.numEntrances][];
+		for (int i = 0; i < cluster.numEntrances; i++)
+			cluster.distance[i] = localDistances(cluster.tile[i], cluster, passClasses);
+		return cluster;
+	}
+
+	/**
+	 * Adds an entrance for each run of tiles along one border passable on
+	 * both sides
+	 *
+	 * @param first
+	 *            first tile of the border inside the cluster
+	 * @param along
+	 *            step along the border
+	 * @param across
+	 *            step to the tile on the other side
+	 */
+	private void addBorder(Cluster cluster, int first, int along, int across, int passClasses) {
+		int runStart = -1;
+		for (int i = 0; i <= CLUSTER_SIZE; i++) {
+			int tile = first + i * along;
+			boolean open = i < CLUSTER_SIZE && passable(tile, passClasses) && passable(tile + across, passClasses);
+			if (open && runStart < 0) {
+				runStart = i;
+			} else if (!open && runStart >= 0) {
+				int runEnd = i - 1;
+				if (runEnd - runStart + 1 >= LONG_RUN) {
+					cluster.add(first + runStart * along, across);
+					cluster.add(first + runEnd * along, across);
+				} else {
+					cluster.add(first + ((runStart + runEnd) / 2) * along, across);
+				}
+				runStart = -1;
+			}
+		}
+	}
+
+	/**
+	 * Breadth first search from a tile over the passable tiles of its
+	 * cluster
+	 *
+	 * @return moves to each of the cluster's entrances, INFINITY if it can't
+	 *         be reached inside the cluster
+	 */
+	private int[] localDistances(int from, Cluster cluster, int passClasses) {
+		localSearch(from, Coord.NONE, cluster, passClasses);
+		int[] distance = new int[cluster.numEntrances];
+		for (int i = 0; i < cluster.numEntrances; i++)
+			distance[i] = localMoves[cluster.local(cluster.tile[i])] - 1;
+		for (int i = 0; i < distance.length; i++) {
+			if (distance[i] < 0)
+				distance[i] = INFINITY;
+		}
+		return distance;
+	}
+
+	/**
+	 * @return fewest moves path from a tile to another in the same cluster,
+	 *         without from, empty if there is none inside the cluster
+	 */
+	private int[] localPath(int from, int to, Cluster cluster, int passClasses) {
+		if (!localSearch(from, to, cluster, passClasses))
+			return new int[0];
+		int[] path = new int[localMoves[cluster.local(to)] - 1];
+		int at = to;
+		for (int i = path.length - 1; i >= 0; i--) {
+			path[i] = at;
+			at = localParent[cluster.local(at)];
+		}
+		return path;
+	}
+
+	/**
+	 * Breadth first search inside a cluster from one of its tiles, into
+	 * localMoves and localParent. Moves are stored plus one so 0 is not
+	 * reached
+	 *
+	 * @return true if to was reached
+	 */
+	private boolean localSearch(int from, int to, Cluster cluster, int passClasses) {
+		int[] moves = localMoves;
+		int[] openQ = localQueue;
+		Arrays.fill(moves, 0);
+		int head = 0;
+		int tail = 0;
+		moves[cluster.local(from)] = 1;
+		openQ[tail++] = from;
+		while (head < tail) {
+			int firstPoint = openQ[head++];
+			if (firstPoint == to)
+				return true;
+			if (stats != null) {
+				stats.pop();
+				stats.expand();
+			}
+			int firstMoves = moves[cluster.local(firstPoint)];
+			for (int step : Coord.PLUS) {
+				int nextPoint = firstPoint + step;
+				if (!cluster.contains(nextPoint) || !passable(nextPoint, passClasses))
+					continue;
+				int nextLocal = cluster.local(nextPoint);
+				if (moves[nextLocal] != 0)
+					continue;
+				moves[nextLocal] = firstMoves + 1;
+				localParent[nextLocal] = firstPoint;
+				openQ[tail++] = nextPoint;
+				if (stats != null)
+					stats.push(true, tail - head);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return true if tile can be passed, tiles never seen can't
+	 */
+	private boolean passable(int tile, int passClasses) {
+		return (passClasses & (1 << WorldModel.tileClass(map.get(tile)))) != 0;
+	}
+
+	/**
+	 * One cluster, its entrances (a tile inside and the tile across the
+	 * border from it) and the moves between them inside the cluster
+	 */
+	private static final class Cluster {
+		private final int minX;
+		private final int minY;
+		private int[] tile;
+		private int[] link;
+		private int numEntrances;
+		private int[][] distance;
+
+		private Cluster(int minX, int minY) {
+			this.minX = minX;
+			this.minY = minY;
+			this.tile = new int[8];
+			this.link = new int[8];
+			this.numEntrances = 0;
+		}
+
+		private void add(int entrance, int across) {
+			if (numEntrances == tile.length) {
+				tile = Arrays.copyOf(tile, 2 * numEntrances);
+				link = Arrays.copyOf(link, 2 * numEntrances);
+			}
+			tile[numEntrances] = entrance;
+			link[numEntrances] = entrance + across;
+			numEntrances++;
+		}
+
+		private int indexOf(int entrance) {
+			for (int i = 0; i < numEntrances; i++) {
+				if (tile[i] == entrance)
+					return i;
+			}
+			return -1;
+		}
+
+		private boolean contains(int point) {
+			int x = Coord.x(point) - minX;
+			int y = Coord.y(point) - minY;
+			return x >= 0 && x < CLUSTER_SIZE && y >= 0 && y < CLUSTER_SIZE;
+		}
+
+		private int local(int point) {
+			return ((Coord.y(point) - minY) << CLUSTER_BITS) | (Coord.x(point) - minX);
+		}
+	}
+}
@@ -0,0 +1,176 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Representation of PathAbstractionCheck class Checks PathAbstraction against
+ * AStar on random maps, run with java PathAbstractionCheck [seed]. Each map
+ * gets a few rounds of queries between random tiles with random items held,
+ * and some of its tiles are changed between rounds so the clusters are
+ * dropped and worked out again as in a game
+ *
+ * Every query must agree with AStar on whether the goal can be reached, and a
+ * path found must be a chain of passable steps from start to goal costing no
+ * less than AStar's. Paths longer than AStar's are allowed (entrances fix
+ * where clusters are crossed) and are counted. Exits with status 1 if any
+ * query fails
+ *
+ * @author bennygmate
+ */
+public class PathAbstractionCheck {
+	private final static int MAPS = 200;
+	private final static int QUERIES = 12;
+	// Queries between changes to the map
+	private final static int ROUND = 3;
+	private final static int CHANGES = 30;
+	// Tiles that block some searches, walls and water more often than doors
+	private final static char[] BLOCKS = { WorldModel.OBSTACLE_WALL, WorldModel.OBSTACLE_WALL,
+			WorldModel.OBSTACLE_TREE, WorldModel.OBSTACLE_TREE, WorldModel.OBSTACLE_WATER, WorldModel.OBSTACLE_WATER,
+			WorldModel.OBSTACLE_DOOR };
+
+	/**
+	 * World model whose map is set directly instead of from views, keeping
+	 * the change log PathAbstraction repairs its clusters from
+	 */
+	static class CheckedWorld extends WorldModel {
+		private final TileMap map;
+		private int version;
+		private int[] changed;
+		private int[] changedVersion;
+		private int numChanged;
+
+		CheckedWorld() {
+			this.map = new TileMap(WorldModel.OBSTACLE_UNSEEN);
+			this.version = 0;
+			this.changed = new int[64];
+			this.changedVersion = new int[64];
+			this.numChanged = 0;
+		}
+
+		@Override
+		public TileMap getMap() {
+			return map;
+		}
+
+		@Override
+		public int getMapVersion() {
+			return version;
+		}
+
+		@Override
+		public int[] changesSince(int since) {
+			int[] tiles = new int[numChanged];
+			int count = 0;
+			for (int i = 0; i < numChanged; i++) {
+				if (changedVersion[i] > since)
+					tiles[count++] = changed[i];
+			}
+			return Arrays.copyOf(tiles, count);
+		}
+
+		/**
+		 * Sets a tile, logged as changed in the next version
+		 */
+		void set(int point, char tile) {
+			map.set(Coord.x(point), Coord.y(point), tile);
+			if (numChanged == changed.length) {
+				changed = Arrays.copyOf(changed, 2 * numChanged);
+				changedVersion = Arrays.copyOf(changedVersion, 2 * numChanged);
+			}
+			changed[numChanged] = point;
+			changedVersion[numChanged++] = version + 1;
+		}
+
+		/**
+		 * Ends a batch of changes, like a view does
+		 */
+		void nextVersion() {
+			version++;
+		}
+	}
+
+	public static void main(String[] args) {
+		Random random = new Random((args.length > 0) ? Long.parseLong(args[0]) : 7);
+		int queries = 0;
+		int failed = 0;
+		int longer = 0;
+		int extraMoves = 0;
+		int worst = 0;
+		for (int trial = 0; trial < MAPS; trial++) {
+			CheckedWorld wm = new CheckedWorld();
+			int size = 30 + random.nextInt(150);
+			double density = 0.4 * random.nextDouble();
+			int originX = random.nextInt(40) - 20;
+			int originY = random.nextInt(40) - 20;
+			for (int x = 0; x < size; x++) {
+				for (int y = 0; y < size; y++)
+					wm.set(Coord.pack(originX + x, originY + y), randomTile(random, density));
+			}
+			wm.nextVersion();
+			PathAbstraction abstraction = new PathAbstraction(wm);
+			for (int query = 0; query < QUERIES; query++) {
+				if (query % ROUND == ROUND - 1) {
+					for (int i = 0; i < CHANGES; i++)
+						wm.set(randomPoint(random, size, originX, originY), randomTile(random, 0.5));
+					wm.nextVersion();
+				}
+				int start = randomPoint(random, size, originX, originY);
+				int goal = randomPoint(random, size, originX, originY);
+				boolean haveKey = random.nextBoolean();
+				boolean haveAxe = random.nextBoolean();
+				CostModel model = CostModel.search(haveKey, haveAxe, 0, false, false);
+				int passClasses = WorldModel.passClasses(haveKey, haveAxe, 0, false, false);
+				int optimal = new AStar(wm.getMap(), start, goal).search(model);
+				int found = abstraction.search(start, goal, passClasses);
+				queries++;
+				String problem = check(wm.getMap(), model, start, goal, optimal, found,
+						abstraction.getSuccessPath());
+				if (problem != null) {
+					failed++;
+					System.out.println("map " + trial + " query " + query + ": " + problem);
+				} else if (found > optimal && found != PathAbstraction.INFINITY) {
+					longer++;
+					extraMoves += found - optimal;
+					worst = Math.max(worst, found - optimal);
+				}
+			}
+		}
+		System.out.println(queries + " queries, " + failed + " failed, " + longer + " longer than A* by "
+				+ extraMoves + " moves in all, worst +" + worst);
+		if (failed > 0)
+			System.exit(1);
+	}
+
+	/**
+	 * @return what is wrong with the path found, null if nothing
+	 */
+	private static String check(TileMap map, CostModel model, int start, int goal, int optimal, int found,
+			int[] path) {
+		if ((optimal == SearchContext.INFINITY) != (found == PathAbstraction.INFINITY))
+			return "A* cost " + optimal + ", HPA* cost " + found;
+		if (found == PathAbstraction.INFINITY)
+			return null;
+		if (found < optimal)
+			return "HPA* cost " + found + " below optimal " + optimal;
+		if (path.length != found)
+			return "cost " + found + " but " + path.length + " moves";
+		if ((path.length == 0) ? start != goal : path[path.length - 1] != goal)
+			return "path does not end at the goal";
+		int at = start;
+		for (int point : path) {
+			if (Coord.manhattan(at, point) != 1 || model.stepCost(map.get(point)) == CostModel.IMPASSABLE)
+				return "bad step to " + Coord.x(point) + "," + Coord.y(point);
+			at = point;
+		}
+		return null;
+	}
+
+	private static char randomTile(Random random, double density) {
+		if (random.nextDouble() < density)
+			return BLOCKS[random.nextInt(BLOCKS.length)];
+		return WorldModel.OBSTACLE_SPACE;
+	}
+
+	private static int randomPoint(Random random, int size, int originX, int originY) {
+		return Coord.pack(originX + random.nextInt(size), originY + random.nextInt(size));
+	}
+}
@@ -0,0 +1,623 @@
+import java.util.Arrays;
+
+/**
+ * Representation of ResourceSearch class A* over the agent's state as well as
+ * its tile: key, axe, dynamite held, raft held or in use, following the game
+ * rules for every move. Trees are chopped (giving a raft) or blasted, doors
+ * unlocked or blasted, walls blasted and tools picked up on the way, so one
+ * search says whether a tile can be reached at all and what it costs in moves
+ * and dynamite, in place of trying each item trick with its own search
+ *
+ * Each label is one state at one tile. Tiles used up on the way (dynamite
+ * picked up, trees chopped, walls blasted, doors opened) are kept per label
+ * so they are only used once. Using a tile up takes something (dynamite, a
+ * tree's raft), opens the way (walls, doors) or both (trees). A label is dropped once
+ * another label at its tile got there first with every item it has, as much
+ * dynamite, the same raft use, nothing taken that it could still take and
+ * every way it opened open too, as that one can do everything it could.
+ * Labels only ever compare against the same raft use and the same side of
+ * the via point, so the one settled first also had no more moves
+ *
+ * Labels, the open list and the settled labels of each tile are kept per
+ * thread and reused by every search on it, tiles stamped with the search
+ * they were settled in like SearchContext. Each used up list carries masks of
+ * its tiles, a bit for each of the first 64 tiles used up in the search, so
+ * the lists are only walked once more than that have been
+ *
+ * @author bennygmate
+ */
+public class ResourceSearch {
+	// Bits of a label's state
+	final static int HAVE_KEY = 1;
+	final static int HAVE_AXE = 2;
+	final static int HAVE_RAFT = 4;
+	final static int USING_RAFT = 8;
+	final static int PASSED_VIA = 16;
+	// Bits where more is never worse, the rest have to match
+	private final static int ITEMS = HAVE_KEY | HAVE_AXE | HAVE_RAFT;
+	private final static int MATCH = USING_RAFT | PASSED_VIA;
+	// What using a tile up does
+	private final static int TAKEN = 1;
+	private final static int OPENED = 2;
+	// Labels made before giving up, the answer is then unknown
+	final static int MAX_LABELS = 1 << 18;
+	// Labels settled between looks at the clock
+	private final static int CLOCK_EVERY = 256;
+	private static final ThreadLocal<Store> STORE = ThreadLocal.withInitial(Store::new);
+	private Store store;
+	private final int startPoint;
+	private final int viaPoint;
+	private final int endPoint;
+	private final TileMap agentMap;
+	// Per label arrays
+	private int[] tile;
+	private int[] state;
+	private int[] numDyna;
+	private int[] moves;
+	private int[] dynaUsed;
+	private int[] parent;
+	// Instruction before moving forward onto the tile, 0 if none
+	private char[] action;
+	// Head of the label's list of used up tiles, -1 if none
+	private int[] used;
+	// Next settled label at the same tile, -1 if none
+	private int[] nextSettled;
+	private int numLabels;
+	// Lists of used up tiles, shared by labels and their children
+	private int[] usedTile;
+	private int[] usedNext;
+	// Taken and opened tiles of the list from each node on, one bit per
+	// tile from bitOf
+	private long[] takenMask;
+	private long[] openedMask;
+	private int numUsed;
+	// Bit of each used up tile in the masks, by TileMap index, only set if
+	// stamped with this search's generation. Tiles past the first 64 share
+	// bits, so the masks alone only answer while there are no more
+	private int[] bitIn;
+	private byte[] bitOf;
+	private int numBits;
+	// First settled label at each tile, indexed by TileMap index, only set
+	// if stamped with this search's generation
+	private int[] settled;
+	private int[] settledIn;
+	private int generation;
+	// Label that reached the end point, -1 if none
+	private int goalLabel;
+	private boolean gaveUp;
+	// Counters the searches add to, null to not count
+	private SearchStats stats;
+
+	/**
+	 * Constructor
+	 *
+	 * @param agentMap
+	 *            contains agent perception
+	 * @param startPoint
+	 *            packed coordinate of the agent
+	 * @param endPoint
+	 *            packed coordinate to reach
+	 */
+	public ResourceSearch(TileMap agentMap, int startPoint, int endPoint) {
+		this(agentMap, startPoint, Coord.NONE, endPoint);
+	}
+
+	/**
+	 * Constructor, for a trip that has to pass a tile on the way (to the
+	 * treasure then home)
+	 *
+	 * @param agentMap
+	 *            contains agent perception
+	 * @param startPoint
+	 *            packed coordinate of the agent
+	 * @param viaPoint
+	 *            packed coordinate to pass first, Coord.NONE if none
+	 * @param endPoint
+	 *            packed coordinate to reach
+	 */
+	public ResourceSearch(TileMap agentMap, int startPoint, int viaPoint, int endPoint) {
+		this.agentMap = agentMap;
+		this.startPoint = startPoint;
+		this.viaPoint = viaPoint;
+		this.endPoint = endPoint;
+		this.goalLabel = -1;
+		this.gaveUp = false;
+		this.stats = null;
+	}
+
+	/**
+	 * Sets counters for the searches to add their expansions, open list use,
+	 * path length and time to, labels count as tiles
+	 *
+	 * @param stats
+	 *            counters to add to, null to not count
+	 */
+	public void setStats(SearchStats stats) {
+		this.stats = stats;
+	}
+
+	/**
+	 * Searches for the fewest moves to the end point with the agent's items,
+	 * fewer dynamite used breaking ties
+	 *
+	 * @param haveKey
+	 *            whether Agent holds key
+	 * @param haveAxe
+	 *            whether Agent holds axe
+	 * @param numDynamite
+	 *            amount of dynamite agent holds
+	 * @param haveRaft
+	 *            whether Agent holds raft
+	 * @param usingRaft
+	 *            whether Agent is using raft
+	 * @return true if a plan was found, false if there is none or the search
+	 *         gave up (see gaveUp())
+	 */
+	public boolean search(boolean haveKey, boolean haveAxe, int numDynamite, boolean haveRaft, boolean usingRaft) {
+		return search(haveKey, haveAxe, numDynamite, haveRaft, usingRaft, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Same search, giving up once the deadline has passed
+	 *
+	 * @param haveKey
+	 *            whether Agent holds key
+	 * @param haveAxe
+	 *            whether Agent holds axe
+	 * @param numDynamite
+	 *            amount of dynamite agent holds
+	 * @param haveRaft
+	 *            whether Agent holds raft
+	 * @param usingRaft
+	 *            whether Agent is using raft
+	 * @param deadline
+	 *            System.nanoTime() to give up by
+	 * @return true if a plan was found, false if there is none or the search
+	 *         gave up (see gaveUp())
+	 */
+	public boolean search(boolean haveKey, boolean haveAxe, int numDynamite, boolean haveRaft, boolean usingRaft,
+			long deadline) {
+		long started = System.nanoTime();
+		begin();
+		goalLabel = -1;
+		gaveUp = false;
+		int startState = 0;
+		if (haveKey)
+			startState |= HAVE_KEY;
+		if (haveAxe)
+			startState |= HAVE_AXE;
+		if (haveRaft)
+			startState |= HAVE_RAFT;
+		if (usingRaft)
+			startState |= USING_RAFT;
+		if (viaPoint == Coord.NONE || viaPoint == startPoint)
+			startState |= PASSED_VIA;
+		// Labels ordered by f cost, then dynamite used, then oldest first
+		IndexedHeap open = store.open;
+		int first = addLabel(startPoint, startState, numDynamite, 0, 0, -1, (char) 0, -1);
+		open.push(first, key(first));
+		int polled = 0;
+		while (!open.isEmpty()) {
+			if (++polled % CLOCK_EVERY == 0 && System.nanoTime() > deadline) {
+				gaveUp = true;
+				return finish(started, false);
+			}
+			int label = open.poll();
+			if (stats != null)
+				stats.pop();
+			int index = agentMap.index(tile[label]);
+			if (isDominated(label, index))
+				continue;
+			settle(label, index);
+			if (tile[label] == endPoint && (state[label] & PASSED_VIA) != 0) {
+				goalLabel = label;
+				return finish(started, true);
+			}
+			if (stats != null)
+				stats.expand();
+			for (int step : Coord.PLUS)
+				expand(label, tile[label] + step, open);
+			if (numLabels >= MAX_LABELS) {
+				gaveUp = true;
+				return finish(started, false);
+			}
+		}
+		return finish(started, false);
+	}
+
+	/**
+	 * Counts the search into stats, if it is set
+	 *
+	 * @return found
+	 */
+	private boolean finish(long started, boolean found) {
+		if (stats != null)
+			stats.finish(found ? pathLength() : 0, started);
+		return found;
+	}
+
+	/**
+	 * Takes the calling thread's arrays and forgets the last search
+	 */
+	private void begin() {
+		store = STORE.get();
+		int numTiles = agentMap.size();
+		if (store.settled.length < numTiles) {
+			store.settled = Arrays.copyOf(store.settled, numTiles);
+			store.settledIn = Arrays.copyOf(store.settledIn, numTiles);
+			store.bitIn = Arrays.copyOf(store.bitIn, numTiles);
+			store.bitOf = Arrays.copyOf(store.bitOf, numTiles);
+		}
+		store.generation++;
+		if (store.generation == Integer.MAX_VALUE) {
+			// Start the stamps over before they wrap
+			Arrays.fill(store.settledIn, 0);
+			Arrays.fill(store.bitIn, 0);
+			store.generation = 1;
+		}
+		store.open.clear();
+		tile = store.tile;
+		state = store.state;
+		numDyna = store.numDyna;
+		moves = store.moves;
+		dynaUsed = store.dynaUsed;
+		parent = store.parent;
+		action = store.action;
+		used = store.used;
+		nextSettled = store.nextSettled;
+		numLabels = 0;
+		usedTile = store.usedTile;
+		usedNext = store.usedNext;
+		takenMask = store.takenMask;
+		openedMask = store.openedMask;
+		bitIn = store.bitIn;
+		bitOf = store.bitOf;
+		numBits = 0;
+		numUsed = 0;
+		settled = store.settled;
+		settledIn = store.settledIn;
+		generation = store.generation;
+	}
+
+	/**
+	 * Adds label to the ones later labels at its tile are compared against
+	 */
+	private void settle(int label, int index) {
+		if (settledIn[index] != generation) {
+			settledIn[index] = generation;
+			settled[index] = -1;
+		}
+		nextSettled[label] = settled[index];
+		settled[index] = label;
+	}
+
+	/**
+	 * @return true if the last search stopped at the label limit or the
+	 *         deadline, so the end point may still be reachable
+	 */
+	public boolean gaveUp() {
+		return gaveUp;
+	}
+
+	/**
+	 * @Pre search() returned true, no other ResourceSearch has searched on
+	 *      this thread since
+	 * @return number of moves forward, chops, unlocks and blasts in the plan,
+	 *         turns not counted
+	 */
+	public int getMoves() {
+		return moves[goalLabel];
+	}
+
+	/**
+	 * @Pre search() returned true, no other ResourceSearch has searched on
+	 *      this thread since
+	 * @return dynamite blasted on the way
+	 */
+	public int getDynamiteUsed() {
+		return dynaUsed[goalLabel];
+	}
+
+	/**
+	 * @Pre search() returned true, no other ResourceSearch has searched on
+	 *      this thread since
+	 * @return array of packed coordinates start to end in travel order without
+	 *         start
+	 */
+	public int[] getPath() {
+		int[] path = new int[pathLength()];
+		int i = path.length - 1;
+		for (int label = goalLabel; parent[label] >= 0; label = parent[label])
+			path[i--] = tile[label];
+		return path;
+	}
+
+	/**
+	 * @Pre search() returned true, no other ResourceSearch has searched on
+	 *      this thread since
+	 * @return instruction (chop, unlock, blast) to do before moving forward
+	 *         onto each tile of getPath(), 0 if none
+	 */
+	public char[] getActions() {
+		char[] actions = new char[pathLength()];
+		int i = actions.length - 1;
+		for (int label = goalLabel; parent[label] >= 0; label = parent[label])
+			actions[i--] = action[label];
+		return actions;
+	}
+
+	/**
+	 * Makes the labels for stepping from a label onto a tile next to it, one
+	 * for each way past whatever is on the tile
+	 */
+	private void expand(int label, int next, IndexedHeap open) {
+		char nextTile = tileAt(label, next);
+		int nextState = state[label];
+		int dyna = numDyna[label];
+		switch (WorldModel.tileClass(nextTile)) {
+		case WorldModel.CLASS_FREE:
+		case WorldModel.CLASS_AGENT:
+		case WorldModel.CLASS_TOOL:
+			step(label, next, nextState, dyna, (char) 0, used[label], open);
+			break;
+		case WorldModel.CLASS_WATER:
+			// Raft is launched from the shore and kept while on water
+			if ((nextState & (HAVE_RAFT | USING_RAFT)) != 0)
+				step(label, next, nextState | USING_RAFT, dyna, (char) 0, used[label], open);
+			break;
+		case WorldModel.CLASS_TREE:
+			if ((nextState & HAVE_AXE) != 0)
+				step(label, next, nextState | HAVE_RAFT, dyna, WorldModel.INSTRUCT_CHOP, useUp(label, next), open);
+			if (dyna > 0)
+				step(label, next, nextState, dyna - 1, WorldModel.INSTRUCT_BLAST, useUp(label, next), open);
+			break;
+		case WorldModel.CLASS_DOOR:
+			// Unlocked doors stay open and the key is kept, so a door never
+			// needs blasting once it is held
+			if ((nextState & HAVE_KEY) != 0)
+				step(label, next, nextState, dyna, WorldModel.INSTRUCT_UNLOCK, useUp(label, next), open);
+			else if (dyna > 0)
+				step(label, next, nextState, dyna - 1, WorldModel.INSTRUCT_BLAST, useUp(label, next), open);
+			break;
+		case WorldModel.CLASS_WALL:
+			if (dyna > 0)
+				step(label, next, nextState, dyna - 1, WorldModel.INSTRUCT_BLAST, useUp(label, next), open);
+			break;
+		default:
+			// Unseen or off the map
+		}
+	}
+
+	/**
+	 * Adds the label for moving forward onto a tile, once it can be entered
+	 */
+	private void step(int label, int next, int nextState, int dyna, char before, int nextUsed,
+			IndexedHeap open) {
+		char nextTile = tileAt(label, next);
+		if (before != 0 || WorldModel.tileClass(nextTile) != WorldModel.CLASS_WATER) {
+			// Stepping onto land leaves the raft behind
+			if ((nextState & USING_RAFT) != 0)
+				nextState &= ~(USING_RAFT | HAVE_RAFT);
+		}
+		if (nextTile == WorldModel.TOOL_AXE) {
+			nextState |= HAVE_AXE;
+		} else if (nextTile == WorldModel.TOOL_KEY) {
+			nextState |= HAVE_KEY;
+		} else if (nextTile == WorldModel.TOOL_DYNAMITE) {
+			dyna++;
+			nextUsed = addUsed(next, nextUsed);
+		}
+		if (next == viaPoint)
+			nextState |= PASSED_VIA;
+		int nextMoves = moves[label] + ((before != 0) ? 2 : 1);
+		int nextDynaUsed = dynaUsed[label] + ((before == WorldModel.INSTRUCT_BLAST) ? 1 : 0);
+		int newLabel = addLabel(next, nextState, dyna, nextMoves, nextDynaUsed, label, before, nextUsed);
+		if (isDominated(newLabel, agentMap.index(next)))
+			numLabels--; // Nothing new, take the label back
+		else {
+			open.push(newLabel, key(newLabel));
+			if (stats != null)
+				stats.push(true, open.size());
+		}
+	}
+
+	/**
+	 * @return true if a settled label at the tile can do everything label can
+	 */
+	private boolean isDominated(int label, int index) {
+		if (settledIn[index] != generation)
+			return false;
+		for (int other = settled[index]; other >= 0; other = nextSettled[other]) {
+			if ((state[label] & ~state[other] & ITEMS) == 0
+					&& (state[label] & MATCH) == (state[other] & MATCH) && numDyna[other] >= numDyna[label]
+					&& isCovered(used[other], used[label]))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return true if list b took every tile list a took and list a opened
+	 *         every tile list b opened
+	 */
+	private boolean isCovered(int a, int b) {
+		if ((maskOf(a, TAKEN) & ~maskOf(b, TAKEN)) != 0 || (maskOf(b, OPENED) & ~maskOf(a, OPENED)) != 0)
+			return false;
+		if (numBits <= Long.SIZE)
+			return true;
+		for (int node = a; node >= 0; node = usedNext[node]) {
+			if ((kindOf(usedTile[node]) & TAKEN) != 0 && !isUsed(b, usedTile[node]))
+				return false;
+		}
+		for (int node = b; node >= 0; node = usedNext[node]) {
+			if ((kindOf(usedTile[node]) & OPENED) != 0 && !isUsed(a, usedTile[node]))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if the tile is in the used up list
+	 */
+	private boolean isUsed(int list, int usedPoint) {
+		if ((maskOf(list, TAKEN | OPENED) & bit(usedPoint)) == 0)
+			return false;
+		if (numBits <= Long.SIZE)
+			return true;
+		for (; list >= 0; list = usedNext[list]) {
+			if (usedTile[list] == usedPoint)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Tile as the label sees it, used up tiles are open ground
+	 */
+	private char tileAt(int label, int point) {
+		if (point == startPoint)
+			// Agent is on the raft on water, otherwise on land
+			return ((state[0] & USING_RAFT) != 0) ? WorldModel.OBSTACLE_WATER : WorldModel.OBSTACLE_SPACE;
+		if (isUsed(used[label], point))
+			return WorldModel.OBSTACLE_SPACE;
+		return agentMap.get(point);
+	}
+
+	/**
+	 * @return label's used up list with point added
+	 */
+	private int useUp(int label, int point) {
+		return addUsed(point, used[label]);
+	}
+
+	private int addUsed(int point, int list) {
+		if (numUsed == usedTile.length) {
+			usedTile = store.usedTile = Arrays.copyOf(usedTile, numUsed * 2);
+			usedNext = store.usedNext = Arrays.copyOf(usedNext, numUsed * 2);
+			takenMask = store.takenMask = Arrays.copyOf(takenMask, numUsed * 2);
+			openedMask = store.openedMask = Arrays.copyOf(openedMask, numUsed * 2);
+		}
+		int kind = kindOf(point);
+		int index = agentMap.index(point);
+		if (bitIn[index] != generation) {
+			bitIn[index] = generation;
+			bitOf[index] = (byte) (numBits++ % Long.SIZE);
+		}
+		usedTile[numUsed] = point;
+		usedNext[numUsed] = list;
+		takenMask[numUsed] = maskOf(list, TAKEN) | (((kind & TAKEN) != 0) ? bit(point) : 0);
+		openedMask[numUsed] = maskOf(list, OPENED) | (((kind & OPENED) != 0) ? bit(point) : 0);
+		return numUsed++;
+	}
+
+	/**
+	 * @return TAKEN, OPENED or both, what using up the tile at point does
+	 */
+	private int kindOf(int point) {
+		switch (agentMap.get(point)) {
+		case WorldModel.TOOL_DYNAMITE:
+			return TAKEN;
+		case WorldModel.OBSTACLE_TREE:
+			return TAKEN | OPENED;
+		default:
+			return OPENED;
+		}
+	}
+
+	/**
+	 * @param kind
+	 *            TAKEN, OPENED or both
+	 * @return mask of the tiles of that kind in a used up list, 0 for none
+	 */
+	private long maskOf(int list, int kind) {
+		if (list < 0)
+			return 0;
+		return (((kind & TAKEN) != 0) ? takenMask[list] : 0) | (((kind & OPENED) != 0) ? openedMask[list] : 0);
+	}
+
+	/**
+	 * @return bit of a tile in used up list masks, 0 if no list has it
+	 */
+	private long bit(int point) {
+		int index = agentMap.index(point);
+		if (index < 0 || bitIn[index] != generation)
+			return 0;
+		return 1L << bitOf[index];
+	}
+
+	private int addLabel(int point, int labelState, int dyna, int labelMoves, int labelDynaUsed, int from,
+			char before, int labelUsed) {
+		if (numLabels == tile.length) {
+			int capacity = numLabels * 2;
+			tile = store.tile = Arrays.copyOf(tile, capacity);
+			state = store.state = Arrays.copyOf(state, capacity);
+			numDyna = store.numDyna = Arrays.copyOf(numDyna, capacity);
+			moves = store.moves = Arrays.copyOf(moves, capacity);
+			dynaUsed = store.dynaUsed = Arrays.copyOf(dynaUsed, capacity);
+			parent = store.parent = Arrays.copyOf(parent, capacity);
+			action = store.action = Arrays.copyOf(action, capacity);
+			used = store.used = Arrays.copyOf(used, capacity);
+			nextSettled = store.nextSettled = Arrays.copyOf(nextSettled, capacity);
+		}
+		int label = numLabels++;
+		tile[label] = point;
+		state[label] = labelState;
+		numDyna[label] = dyna;
+		moves[label] = labelMoves;
+		dynaUsed[label] = labelDynaUsed;
+		parent[label] = from;
+		action[label] = before;
+		used[label] = labelUsed;
+		nextSettled[label] = -1;
+		return label;
+	}
+
+	/**
+	 * Open list key, f cost then dynamite used (up to 63), the heap takes the
+	 * older label on a tie. Every move costs at
+	 * least 1, so Manhattan distance (through the via point while it is still
+	 * to pass) is a consistent heuristic and the first label settled at a tile
+	 * got there in the fewest moves
+	 */
+	private int key(int label) {
+		int h;
+		if ((state[label] & PASSED_VIA) != 0)
+			h = Coord.manhattan(tile[label], endPoint);
+		else
+			h = Coord.manhattan(tile[label], viaPoint) + Coord.manhattan(viaPoint, endPoint);
+		return ((moves[label] + h) << 6) | Math.min(dynaUsed[label], 63);
+	}
+
+	private int pathLength() {
+		int length = 0;
+		for (int label = goalLabel; parent[label] >= 0; label = parent[label])
+			length++;
+		return length;
+	}
+
+	/**
+	 * Arrays a thread's searches work in, grown as needed and never shrunk
+	 */
+	private static class Store {
+		private int[] tile = new int[1024];
+		private int[] state = new int[1024];
+		private int[] numDyna = new int[1024];
+		private int[] moves = new int[1024];
+		private int[] dynaUsed = new int[1024];
+		private int[] parent = new int[1024];
+		private char[] action = new char[1024];
+		private int[] used = new int[1024];
+		private int[] nextSettled = new int[1024];
+		private int[] usedTile = new int[64];
+		private int[] usedNext = new int[64];
+		private long[] takenMask = new long[64];
+		private long[] openedMask = new long[64];
+		private int[] settled = new int[0];
+		private int[] settledIn = new int[0];
+		private int generation = 0;
+		private int[] bitIn = new int[0];
+		private byte[] bitOf = new byte[0];
+		// Labels go past MAX_LABELS by at most the ones one expansion makes
+		private IndexedHeap open = new IndexedHeap(MAX_LABELS + 2 * Coord.PLUS.length, true);
+	}
+}
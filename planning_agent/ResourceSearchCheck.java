@@ -0,0 +1,333 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Representation of ResourceSearchCheck class Checks ResourceSearch against a
+ * plain Dijkstra search over the same states on small random maps, run with
+ * java ResourceSearchCheck [seed]. The plain search keeps every state, the
+ * tiles used up included, and drops none, so it finds the fewest moves (then
+ * fewest dynamite used) there are. ResourceSearch has to find the same, the
+ * labels it drops must never lose a plan. It may only give up where the plain
+ * search needed more states than ResourceSearch.MAX_LABELS
+ *
+ * Every plan found is also replayed step by step from the start: each step
+ * has to be allowed with what is held at that point, and the moves, dynamite
+ * used and via point have to come out as reported. Exits with status 1 if
+ * any query fails
+ *
+ * @author bennygmate
+ */
+public class ResourceSearchCheck {
+	private final static int MAPS = 300;
+	private final static int QUERIES = 8;
+	// Most tiles that can be used up (trees, walls, doors, dynamite), one
+	// bit each in the plain search's states
+	private final static int MAX_USABLE = 12;
+	// Bits of a state, as ResourceSearch
+	private final static int KEY = 1;
+	private final static int AXE = 2;
+	private final static int RAFT = 4;
+	private final static int ON_RAFT = 8;
+	private final static int VIA = 16;
+	private final static char[] TILES = { WorldModel.OBSTACLE_WALL, WorldModel.OBSTACLE_WALL,
+			WorldModel.OBSTACLE_TREE, WorldModel.OBSTACLE_DOOR, WorldModel.OBSTACLE_WATER, WorldModel.OBSTACLE_WATER,
+			WorldModel.OBSTACLE_WATER, WorldModel.TOOL_KEY, WorldModel.TOOL_AXE, WorldModel.TOOL_DYNAMITE };
+	// States the last plain search reached
+	private static int numStates;
+
+	public static void main(String[] args) {
+		Random random = new Random((args.length > 0) ? Long.parseLong(args[0]) : 7);
+		int queries = 0;
+		int found = 0;
+		int failed = 0;
+		for (int trial = 0; trial < MAPS; trial++) {
+			int width = 4 + random.nextInt(9);
+			int height = 4 + random.nextInt(9);
+			TileMap map = randomMap(random, width, height);
+			for (int query = 0; query < QUERIES; query++) {
+				int start = randomFree(random, map, width, height);
+				int via = random.nextBoolean() ? Coord.NONE : randomFree(random, map, width, height);
+				int end = randomFree(random, map, width, height);
+				if (start == Coord.NONE || end == Coord.NONE)
+					continue;
+				int startState = (random.nextInt(4) == 0 ? KEY : 0) | (random.nextInt(4) == 0 ? AXE : 0)
+						| (random.nextInt(4) == 0 ? RAFT : 0);
+				int dynamite = random.nextInt(3);
+				ResourceSearch rs = new ResourceSearch(map, start, via, end);
+				boolean ok = rs.search((startState & KEY) != 0, (startState & AXE) != 0, dynamite,
+						(startState & RAFT) != 0, false);
+				long best = plainSearch(map, start, via, end, startState, dynamite);
+				queries++;
+				String problem;
+				if (rs.gaveUp() && numStates > ResourceSearch.MAX_LABELS)
+					problem = null;
+				else if (rs.gaveUp())
+					problem = "gave up after " + numStates + " states";
+				else if (ok != (best >= 0))
+					problem = "found " + ok + ", plain search found " + (best >= 0);
+				else if (!ok)
+					problem = null;
+				else if (rs.getMoves() != (int) (best >> 8) || rs.getDynamiteUsed() != (int) (best & 0xFF))
+					problem = rs.getMoves() + " moves " + rs.getDynamiteUsed() + " dynamite, plain search "
+							+ (best >> 8) + " moves " + (best & 0xFF) + " dynamite";
+				else
+					problem = replay(map, start, via, end, startState, dynamite, rs);
+				if (ok)
+					found++;
+				if (problem != null) {
+					failed++;
+					System.out.println("map " + trial + " query " + query + ": " + problem);
+				}
+			}
+		}
+		System.out.println(queries + " queries, " + found + " with a plan, " + failed + " failed");
+		if (failed > 0)
+			System.exit(1);
+	}
+
+	/**
+	 * Dijkstra over (tile, state, dynamite held, tiles used up), every state
+	 * kept, with the same moves as ResourceSearch
+	 *
+	 * @return moves << 8 | dynamite used of the best plan, -1 if none
+	 */
+	private static long plainSearch(TileMap map, int start, int via, int end, int startState, int dynamite) {
+		int[] usable = usableTiles(map);
+		if (via == Coord.NONE || via == start)
+			startState |= VIA;
+		// Best moves << 8 | dynamite used of each state reached
+		Map<Long, Long> best = new HashMap<>();
+		// Entries are cost (moves << 8 | dynamite used), then the state
+		PriorityQueue<long[]> open = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+		long first = pack(start, startState, dynamite, 0);
+		best.put(first, 0L);
+		open.add(new long[] { 0, first });
+		while (!open.isEmpty()) {
+			long[] entry = open.poll();
+			long cost = entry[0];
+			long packed = entry[1];
+			if (best.get(packed) < cost)
+				continue;
+			int point = (int) (packed >>> 32);
+			int state = (int) (packed >>> 24) & 0xFF;
+			int held = (int) (packed >>> 16) & 0xFF;
+			int used = (int) packed & 0xFFFF;
+			if (point == end && (state & VIA) != 0) {
+				numStates = best.size();
+				return cost;
+			}
+			for (int step : Coord.PLUS) {
+				int next = point + step;
+				int bit = indexOf(usable, next);
+				char tile = tileAt(map, start, next, used, bit);
+				int[] moves = moves(tile, state, held);
+				for (int m = 0; m < moves.length; m += 3) {
+					char action = (char) moves[m];
+					int nextState = land(tile, action, moves[m + 1], next, via);
+					int nextHeld = moves[m + 2];
+					int nextUsed = used;
+					if (tile == WorldModel.TOOL_DYNAMITE) {
+						nextHeld++;
+						nextUsed |= 1 << bit;
+					} else if (action != 0) {
+						nextUsed |= 1 << bit;
+					}
+					long nextCost = cost + (((action != 0) ? 2 : 1) << 8)
+							+ ((action == WorldModel.INSTRUCT_BLAST) ? 1 : 0);
+					long nextPacked = pack(next, nextState, nextHeld, nextUsed);
+					Long known = best.get(nextPacked);
+					if (known == null || nextCost < known) {
+						best.put(nextPacked, nextCost);
+						open.add(new long[] { nextCost, nextPacked });
+					}
+				}
+			}
+		}
+		numStates = best.size();
+		return -1;
+	}
+
+	/**
+	 * Steps the plan found from the start, checking each one is allowed
+	 *
+	 * @return what is wrong with the plan, null if nothing
+	 */
+	private static String replay(TileMap map, int start, int via, int end, int startState, int dynamite,
+			ResourceSearch rs) {
+		int[] usable = usableTiles(map);
+		int[] path = rs.getPath();
+		char[] actions = rs.getActions();
+		int state = startState | ((via == Coord.NONE || via == start) ? VIA : 0);
+		int held = dynamite;
+		int used = 0;
+		int moves = 0;
+		int blasts = 0;
+		int point = start;
+		for (int t = 0; t < path.length; t++) {
+			int next = path[t];
+			if (Coord.manhattan(point, next) != 1)
+				return "step " + t + " is not to a neighbour";
+			int bit = indexOf(usable, next);
+			char tile = tileAt(map, start, next, used, bit);
+			int[] allowed = moves(tile, state, held);
+			int m = 0;
+			while (m < allowed.length && allowed[m] != actions[t])
+				m += 3;
+			if (m == allowed.length)
+				return "step " + t + " onto '" + tile + "' not allowed with action " + (int) actions[t];
+			state = land(tile, actions[t], allowed[m + 1], next, via);
+			held = allowed[m + 2];
+			if (tile == WorldModel.TOOL_DYNAMITE) {
+				held++;
+				used |= 1 << bit;
+			} else if (actions[t] != 0) {
+				used |= 1 << bit;
+			}
+			moves += (actions[t] != 0) ? 2 : 1;
+			blasts += (actions[t] == WorldModel.INSTRUCT_BLAST) ? 1 : 0;
+			point = next;
+		}
+		if (point != end || (state & VIA) == 0)
+			return "plan does not pass the via point and end at the end point";
+		if (moves != rs.getMoves() || blasts != rs.getDynamiteUsed())
+			return "plan has " + moves + " moves " + blasts + " dynamite, reported " + rs.getMoves() + " and "
+					+ rs.getDynamiteUsed();
+		return null;
+	}
+
+	/**
+	 * Ways onto a tile, the game rules ResourceSearch follows
+	 *
+	 * @return action, state and dynamite held after it, three per way
+	 */
+	private static int[] moves(char tile, int state, int held) {
+		switch (WorldModel.tileClass(tile)) {
+		case WorldModel.CLASS_FREE:
+		case WorldModel.CLASS_AGENT:
+		case WorldModel.CLASS_TOOL:
+			return new int[] { 0, state, held };
+		case WorldModel.CLASS_WATER:
+			if ((state & (RAFT | ON_RAFT)) != 0)
+				return new int[] { 0, state | ON_RAFT, held };
+			return new int[0];
+		case WorldModel.CLASS_TREE:
+			if ((state & AXE) != 0 && held > 0)
+				return new int[] { WorldModel.INSTRUCT_CHOP, state | RAFT, held, WorldModel.INSTRUCT_BLAST, state,
+						held - 1 };
+			if ((state & AXE) != 0)
+				return new int[] { WorldModel.INSTRUCT_CHOP, state | RAFT, held };
+			return blast(state, held);
+		case WorldModel.CLASS_DOOR:
+			if ((state & KEY) != 0)
+				return new int[] { WorldModel.INSTRUCT_UNLOCK, state, held };
+			return blast(state, held);
+		case WorldModel.CLASS_WALL:
+			return blast(state, held);
+		default:
+			return new int[0];
+		}
+	}
+
+	private static int[] blast(int state, int held) {
+		return (held > 0) ? new int[] { WorldModel.INSTRUCT_BLAST, state, held - 1 } : new int[0];
+	}
+
+	/**
+	 * State once on the tile: landing leaves the raft behind, tools are
+	 * picked up and the via point is passed
+	 */
+	private static int land(char tile, int action, int state, int next, int via) {
+		if ((action != 0 || WorldModel.tileClass(tile) != WorldModel.CLASS_WATER) && (state & ON_RAFT) != 0)
+			state &= ~(ON_RAFT | RAFT);
+		if (tile == WorldModel.TOOL_AXE)
+			state |= AXE;
+		else if (tile == WorldModel.TOOL_KEY)
+			state |= KEY;
+		if (next == via)
+			state |= VIA;
+		return state;
+	}
+
+	/**
+	 * Tile as a plan sees it, used up tiles are open ground and the start is
+	 * land (the agent starts off the raft)
+	 */
+	private static char tileAt(TileMap map, int start, int point, int used, int bit) {
+		if (point == start)
+			return WorldModel.OBSTACLE_SPACE;
+		if (bit >= 0 && (used & (1 << bit)) != 0)
+			return WorldModel.OBSTACLE_SPACE;
+		return map.get(point);
+	}
+
+	/**
+	 * @return tiles that can be used up, a tile's bit is its place here
+	 */
+	private static int[] usableTiles(TileMap map) {
+		int[] usable = new int[MAX_USABLE];
+		int count = 0;
+		for (int x = map.minX(); x <= map.maxX(); x++) {
+			for (int y = map.minY(); y <= map.maxY(); y++) {
+				char tile = map.get(x, y);
+				if (tile == WorldModel.OBSTACLE_TREE || tile == WorldModel.OBSTACLE_WALL
+						|| tile == WorldModel.OBSTACLE_DOOR || tile == WorldModel.TOOL_DYNAMITE)
+					usable[count++] = Coord.pack(x, y);
+			}
+		}
+		return Arrays.copyOf(usable, count);
+	}
+
+	private static int indexOf(int[] points, int point) {
+		for (int i = 0; i < points.length; i++) {
+			if (points[i] == point)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return plain search state, point in the top half
+	 */
+	private static long pack(int point, int state, int held, int used) {
+		return ((long) point << 32) | (state << 24) | (held << 16) | used;
+	}
+
+	/**
+	 * Random map with at most MAX_USABLE tiles that can be used up, walled
+	 * round by unseen tiles
+	 */
+	private static TileMap randomMap(Random random, int width, int height) {
+		TileMap map = new TileMap(WorldModel.OBSTACLE_UNSEEN);
+		double density = 0.2 + 0.4 * random.nextDouble();
+		int usable = 0;
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				char tile = WorldModel.OBSTACLE_SPACE;
+				if (random.nextDouble() < density) {
+					tile = TILES[random.nextInt(TILES.length)];
+					boolean usesUp = tile == WorldModel.OBSTACLE_TREE || tile == WorldModel.OBSTACLE_WALL
+							|| tile == WorldModel.OBSTACLE_DOOR || tile == WorldModel.TOOL_DYNAMITE;
+					if (usesUp && usable++ >= MAX_USABLE)
+						tile = WorldModel.OBSTACLE_SPACE;
+				}
+				map.set(x, y, tile);
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * @return a random open tile, Coord.NONE if none was found
+	 */
+	private static int randomFree(Random random, TileMap map, int width, int height) {
+		for (int tries = 0; tries < 100; tries++) {
+			int point = Coord.pack(random.nextInt(width), random.nextInt(height));
+			if (map.get(point) == WorldModel.OBSTACLE_SPACE)
+				return point;
+		}
+		return Coord.NONE;
+	}
+}
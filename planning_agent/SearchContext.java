@@ -0,0 +1,191 @@
+import java.util.Arrays;
+
+/**
+ * Representation of SearchContext class Per tile arrays a search works in,
+ * kept per thread and reused by every search on it. Each search gets a new
+ * generation number and a tile's entries only count if they were written in
+ * the current generation, so starting a search is O(1) and a search only
+ * touches the tiles it reaches
+ *
+ * @author bennygmate
+ */
+public class SearchContext {
+	// Cost of a tile not reached yet
+	final static int INFINITY = 999999;
+	private static final ThreadLocal<SearchContext> CONTEXT = ThreadLocal.withInitial(SearchContext::new);
+	// Second context for the backward half of a bidirectional search
+	private static final ThreadLocal<SearchContext> BACKWARD = ThreadLocal.withInitial(SearchContext::new);
+	// Per tile arrays, indexed by TileMap index
+	private int[] gCost;
+	private int[] parent;
+	private int[] pointAt;
+	// Generation each tile was last reached and closed in, closed tiles have
+	// their own generation so they can be reopened without losing g costs
+	private int[] reached;
+	private int[] closed;
+	private int generation;
+	private int closedGeneration;
+	private IndexedHeap openSet;
+	private BucketQueue bucketQueue;
+	// Wrapper counting a search's open set use, one per context
+	private CountingOpenSet counting;
+
+	/**
+	 * Constructor
+	 */
+	private SearchContext() {
+		this.gCost = new int[0];
+		this.parent = new int[0];
+		this.pointAt = new int[0];
+		this.reached = new int[0];
+		this.closed = new int[0];
+		this.generation = 0;
+		this.closedGeneration = 0;
+		this.openSet = new IndexedHeap(0);
+		this.bucketQueue = new BucketQueue(0);
+		this.counting = new CountingOpenSet(openSet, null);
+	}
+
+	/**
+	 * @return the calling thread's context
+	 */
+	public static SearchContext forThread() {
+		return CONTEXT.get();
+	}
+
+	/**
+	 * @return the calling thread's context for searching backward from the
+	 *         end point, used alongside forThread()
+	 */
+	public static SearchContext backwardForThread() {
+		return BACKWARD.get();
+	}
+
+	/**
+	 * Starts a new search, forgetting everything from the last one
+	 *
+	 * @param numTiles
+	 *            number of tiles on the map (TileMap size)
+	 */
+	public void begin(int numTiles) {
+		if (reached.length < numTiles) {
+			gCost = Arrays.copyOf(gCost, numTiles);
+			parent = Arrays.copyOf(parent, numTiles);
+			pointAt = Arrays.copyOf(pointAt, numTiles);
+			reached = Arrays.copyOf(reached, numTiles);
+			closed = Arrays.copyOf(closed, numTiles);
+			openSet = new IndexedHeap(numTiles);
+			bucketQueue = new BucketQueue(numTiles);
+		}
+		openSet.clear();
+		bucketQueue.clear();
+		generation++;
+		if (generation == Integer.MAX_VALUE) {
+			// Start the stamps over before they wrap
+			Arrays.fill(reached, 0);
+			generation = 1;
+		}
+		reopen();
+	}
+
+	/**
+	 * Marks every tile as not expanded, g costs and parents are kept (anytime
+	 * search, each pass with a smaller weight)
+	 */
+	public void reopen() {
+		closedGeneration++;
+		if (closedGeneration == Integer.MAX_VALUE) {
+			Arrays.fill(closed, 0);
+			closedGeneration = 1;
+		}
+	}
+
+	/**
+	 * @param buckets
+	 *            true for the bucket queue, false for the binary heap
+	 * @return open set of this search, keyed by tile index
+	 */
+	public OpenSet openSet(boolean buckets) {
+		return buckets ? bucketQueue : openSet;
+	}
+
+	/**
+	 * @param buckets
+	 *            true for the bucket queue, false for the binary heap
+	 * @param stats
+	 *            counters to add the open set's use to, null to not count
+	 * @return open set of this search, keyed by tile index, counted through
+	 *         the context's one wrapper if stats is set
+	 */
+	public OpenSet openSet(boolean buckets, SearchStats stats) {
+		OpenSet open = openSet(buckets);
+		return (stats == null) ? open : counting.watch(open, stats);
+	}
+
+	/**
+	 * @param index
+	 *            tile index
+	 * @return g cost of the tile, INFINITY if not reached this search
+	 */
+	public int gCost(int index) {
+		return (reached[index] == generation) ? gCost[index] : INFINITY;
+	}
+
+	/**
+	 * @param index
+	 *            tile index
+	 * @return packed coordinate of the tile before it on the best path,
+	 *         Coord.NONE if there is none
+	 */
+	public int parent(int index) {
+		return (reached[index] == generation) ? parent[index] : Coord.NONE;
+	}
+
+	/**
+	 * @param index
+	 *            tile index
+	 * @return packed coordinate of a tile reached this search
+	 */
+	public int pointAt(int index) {
+		return pointAt[index];
+	}
+
+	/**
+	 * Records a new best path to a tile
+	 *
+	 * @param index
+	 *            tile index
+	 * @param point
+	 *            packed coordinate of the tile
+	 * @param cost
+	 *            g cost of the tile
+	 * @param from
+	 *            packed coordinate of the tile before it, Coord.NONE for the
+	 *            start
+	 */
+	public void reach(int index, int point, int cost, int from) {
+		reached[index] = generation;
+		gCost[index] = cost;
+		parent[index] = from;
+		pointAt[index] = point;
+	}
+
+	/**
+	 * @param index
+	 *            tile index
+	 * @return true if the tile was expanded this search
+	 */
+	public boolean isClosed(int index) {
+		return closed[index] == closedGeneration;
+	}
+
+	/**
+	 * Marks a tile as expanded
+	 *
+	 * @param index
+	 *            tile index
+	 */
+	public void close(int index) {
+		closed[index] = closedGeneration;
+	}
+}
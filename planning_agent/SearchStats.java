@@ -0,0 +1,168 @@
+/**
+ * Representation of SearchStats class Counters of the work searches did,
+ * filled in by any search given one (setStats) and added up over as many
+ * searches as it is passed to. The planner keeps one per decision, so a slow
+ * move can be put down to the searches behind it
+ *
+ * Expanded tiles are the ones whose neighbours were looked at, generated the
+ * ones first put on the open list or queue. Pushes also count a tile moved to
+ * a lower key, pops every tile taken off
+ *
+ * @author bennygmate
+ */
+public class SearchStats {
+	private int searches;
+	private long expanded;
+	private long generated;
+	private long pushes;
+	private long pops;
+	private int peakOpen;
+	private long pathLength;
+	private long nanos;
+
+	/**
+	 * Constructor, every counter starts at 0
+	 */
+	public SearchStats() {
+		reset();
+	}
+
+	/**
+	 * Sets every counter back to 0
+	 */
+	public void reset() {
+		searches = 0;
+		expanded = 0;
+		generated = 0;
+		pushes = 0;
+		pops = 0;
+		peakOpen = 0;
+		pathLength = 0;
+		nanos = 0;
+	}
+
+	/**
+	 * Adds the counters of other to these, the peak open size is the larger
+	 * of the two
+	 *
+	 * @param other
+	 *            counters to add
+	 */
+	public void add(SearchStats other) {
+		searches += other.searches;
+		expanded += other.expanded;
+		generated += other.generated;
+		pushes += other.pushes;
+		pops += other.pops;
+		peakOpen = Math.max(peakOpen, other.peakOpen);
+		pathLength += other.pathLength;
+		nanos += other.nanos;
+	}
+
+	/**
+	 * A tile was expanded
+	 */
+	void expand() {
+		expanded++;
+	}
+
+	/**
+	 * A tile was put on the open list, new to it if generated
+	 *
+	 * @param isNew
+	 *            true if the tile was not on the open list
+	 * @param openSize
+	 *            open list size after the push
+	 */
+	void push(boolean isNew, int openSize) {
+		pushes++;
+		if (isNew)
+			generated++;
+		peakOpen = Math.max(peakOpen, openSize);
+	}
+
+	/**
+	 * A tile was taken off the open list
+	 */
+	void pop() {
+		pops++;
+	}
+
+	/**
+	 * A search finished
+	 *
+	 * @param length
+	 *            moves of the path it found, 0 for none or searches that don't
+	 *            find paths
+	 * @param started
+	 *            System.nanoTime() the search started at
+	 */
+	void finish(int length, long started) {
+		searches++;
+		pathLength += length;
+		nanos += System.nanoTime() - started;
+	}
+
+	/**
+	 * @return number of searches finished
+	 */
+	public int getSearches() {
+		return searches;
+	}
+
+	/**
+	 * @return tiles expanded
+	 */
+	public long getExpanded() {
+		return expanded;
+	}
+
+	/**
+	 * @return tiles first put on an open list
+	 */
+	public long getGenerated() {
+		return generated;
+	}
+
+	/**
+	 * @return pushes onto open lists, lowered keys included
+	 */
+	public long getPushes() {
+		return pushes;
+	}
+
+	/**
+	 * @return tiles taken off open lists
+	 */
+	public long getPops() {
+		return pops;
+	}
+
+	/**
+	 * @return most tiles on one open list at once
+	 */
+	public int getPeakOpen() {
+		return peakOpen;
+	}
+
+	/**
+	 * @return moves of every path found added up
+	 */
+	public long getPathLength() {
+		return pathLength;
+	}
+
+	/**
+	 * @return wall time of the searches in nanoseconds
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+	@Override
+	public String toString() {
+		return searches + " searches, " + expanded + " expanded, " + generated + " generated, " + pushes
+				+ " pushes, " + pops + " pops, peak open " + peakOpen + ", path " + pathLength + ", "
+				+ (nanos / 1000) + "us";
+	}
+}
@@ -0,0 +1,375 @@
+import java.util.Arrays;
+
+/**
+ * Representation of TileMap class Stores the agent map in square chunks of
+ * tiles that are only allocated once the agent sees into them, so the map has
+ * no fixed size and memory grows with the explored area. Tiles in chunks that
+ * were never allocated read as the fill tile (unseen)
+ *
+ * Every stored tile also has a dense index (chunk number * CHUNK_AREA + offset
+ * in chunk) that never changes once given out, so searches can keep their own
+ * per tile arrays of size()
+ *
+ * Alongside the tiles each chunk keeps one bitset per tile class
+ * (WorldModel.tileClass), bit i of a layer set if tile i is of that class. A
+ * passability mask for the whole map is then a handful of word wide ORs
+ *
+ * snapshot() hands out a read only copy that shares every chunk with the
+ * live map. The live map copies a shared chunk (and the chunk directory) the
+ * first time it writes to it afterwards, so a snapshot costs nothing to take
+ * and stays as it was while later views are applied
+ *
+ * @author bennygmate
+ */
+public class TileMap {
+	// Chunks are CHUNK_SIZE x CHUNK_SIZE tiles
+	final static int CHUNK_BITS = 5;
+	final static int CHUNK_SIZE = 1 << CHUNK_BITS;
+	final static int CHUNK_AREA = CHUNK_SIZE * CHUNK_SIZE;
+	private final static int CHUNK_MASK = CHUNK_SIZE - 1;
+	// Longs needed for one bitset layer of a chunk
+	final static int CHUNK_WORDS = CHUNK_AREA / 64;
+	private final char fill;
+	// Tiles of each chunk, by chunk number in order of allocation
+	private char[][] chunks;
+	// Class layers of each chunk, CHUNK_WORDS longs per class
+	private long[][] layers;
+	private int numChunks;
+	// Chunk numbers laid out over the bounding box of allocated chunks, -1 if
+	// chunk is not allocated
+	private int[] directory;
+	private int dirMinX;
+	private int dirMinY;
+	private int dirWidth;
+	private int dirHeight;
+	// Snapshot generation each chunk was last copied in, a chunk from an older
+	// generation may be shared with a snapshot and is copied before writing
+	private int[] chunkGeneration;
+	private int directoryGeneration;
+	private int generation;
+	// Last snapshot handed out, reused while nothing has been written since
+	private TileMap snapshot;
+	// Snapshots are read only
+	private final boolean readOnly;
+	// Bounding box of tiles written so far
+	private int minX;
+	private int maxX;
+	private int minY;
+	private int maxY;
+
+	/**
+	 * Constructor
+	 *
+	 * @param fill
+	 *            tile every location starts as
+	 */
+	public TileMap(char fill) {
+		this.fill = fill;
+		this.chunks = new char[16][];
+		this.layers = new long[16][];
+		this.numChunks = 0;
+		this.directory = new int[0];
+		this.dirWidth = 0;
+		this.dirHeight = 0;
+		this.minX = Integer.MAX_VALUE;
+		this.maxX = Integer.MIN_VALUE;
+		this.minY = Integer.MAX_VALUE;
+		this.maxY = Integer.MIN_VALUE;
+		this.chunkGeneration = new int[16];
+		this.directoryGeneration = 0;
+		this.generation = 0;
+		this.snapshot = null;
+		this.readOnly = false;
+	}
+
+	/**
+	 * Constructor for a snapshot, shares the chunks of live
+	 *
+	 * @param live
+	 *            map to take the snapshot of
+	 */
+	private TileMap(TileMap live) {
+		this.fill = live.fill;
+		this.chunks = Arrays.copyOf(live.chunks, live.numChunks);
+		this.layers = Arrays.copyOf(live.layers, live.numChunks);
+		this.numChunks = live.numChunks;
+		this.directory = live.directory;
+		this.dirMinX = live.dirMinX;
+		this.dirMinY = live.dirMinY;
+		this.dirWidth = live.dirWidth;
+		this.dirHeight = live.dirHeight;
+		this.minX = live.minX;
+		this.maxX = live.maxX;
+		this.minY = live.minY;
+		this.maxY = live.maxY;
+		this.snapshot = this;
+		this.readOnly = true;
+	}
+
+	/**
+	 * Returns a read only copy of the map as it is now, safe to keep and read
+	 * from another thread while this map goes on being written, as long as
+	 * it is handed over safely (executor, volatile field)
+	 *
+	 * @return snapshot of the map, the same one as last time if nothing was
+	 *         written since
+	 */
+	public TileMap snapshot() {
+		if (snapshot == null) {
+			snapshot = new TileMap(this);
+			// Every chunk and the directory are shared from here on
+			generation++;
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Returns the tile at the given coordinate
+	 *
+	 * @param x
+	 *            x coordinate of tile
+	 * @param y
+	 *            y coordinate of tile
+	 * @return tile representation at (x, y)
+	 */
+	public char get(int x, int y) {
+		int chunk = chunkAt(x >> CHUNK_BITS, y >> CHUNK_BITS);
+		if (chunk < 0)
+			return fill;
+		return chunks[chunk][offset(x, y)];
+	}
+
+	/**
+	 * @param coord
+	 *            packed coordinate of tile
+	 * @return tile representation at coord
+	 */
+	public char get(int coord) {
+		return get(Coord.x(coord), Coord.y(coord));
+	}
+
+	/**
+	 * Overwrites the tile at the given coordinate, allocating its chunk if
+	 * needed
+	 *
+	 * @param x
+	 *            x coordinate of tile
+	 * @param y
+	 *            y coordinate of tile
+	 * @param tile
+	 *            new tile representation
+	 */
+	public void set(int x, int y, char tile) {
+		if (readOnly)
+			throw new UnsupportedOperationException("Map snapshots are read only");
+		int chunk = chunkAt(x >> CHUNK_BITS, y >> CHUNK_BITS);
+		if (chunk < 0) {
+			if (tile == fill)
+				return;
+			chunk = allocateChunk(x >> CHUNK_BITS, y >> CHUNK_BITS);
+		}
+		int offset = offset(x, y);
+		char oldTile = chunks[chunk][offset];
+		if (oldTile != tile) {
+			if (chunkGeneration[chunk] != generation) {
+				// Chunk may be in a snapshot, write to a copy
+				chunks[chunk] = chunks[chunk].clone();
+				layers[chunk] = layers[chunk].clone();
+				chunkGeneration[chunk] = generation;
+			}
+			snapshot = null;
+			chunks[chunk][offset] = tile;
+			setLayerBit(layers[chunk], WorldModel.tileClass(oldTile), offset, false);
+			setLayerBit(layers[chunk], WorldModel.tileClass(tile), offset, true);
+		}
+		if (x < minX || x > maxX || y < minY || y > maxY) {
+			snapshot = null;
+			minX = Math.min(minX, x);
+			maxX = Math.max(maxX, x);
+			minY = Math.min(minY, y);
+			maxY = Math.max(maxY, y);
+		}
+	}
+
+	/**
+	 * Index of a tile, searches use it to keep their own per tile arrays
+	 *
+	 * @param coord
+	 *            packed coordinate of tile
+	 * @return index between 0 and size(), or -1 if the tile is not stored
+	 *         (never seen)
+	 */
+	public int index(int coord) {
+		int x = Coord.x(coord);
+		int y = Coord.y(coord);
+		int chunk = chunkAt(x >> CHUNK_BITS, y >> CHUNK_BITS);
+		if (chunk < 0)
+			return -1;
+		return (chunk << (2 * CHUNK_BITS)) | offset(x, y);
+	}
+
+	/**
+	 * Builds a bitset over tile indices with bit index(coord) set when the
+	 * tile at coord is one of the given classes
+	 *
+	 * @param classes
+	 *            bitmask with bit (1 << CLASS_) set for each class wanted, see
+	 *            WorldModel.passClasses
+	 * @return bitset of size() bits, test with isSet()
+	 */
+	public long[] layerMask(int classes) {
+		long[] mask = new long[numChunks * CHUNK_WORDS];
+		for (int tileClass = 0; tileClass < WorldModel.NUM_CLASSES; tileClass++) {
+			if ((classes & (1 << tileClass)) == 0)
+				continue;
+			int from = tileClass * CHUNK_WORDS;
+			for (int chunk = 0; chunk < numChunks; chunk++) {
+				long[] layer = layers[chunk];
+				int to = chunk * CHUNK_WORDS;
+				for (int word = 0; word < CHUNK_WORDS; word++) {
+					mask[to + word] |= layer[from + word];
+				}
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * @param mask
+	 *            bitset from layerMask()
+	 * @param index
+	 *            tile index from index(), may be -1
+	 * @return true if the tile's bit is set
+	 */
+	public static boolean isSet(long[] mask, int index) {
+		return index >= 0 && (mask[index >>> 6] & (1L << index)) != 0;
+	}
+
+	/**
+	 * @return number of tiles stored in the map, an upper bound on index()
+	 */
+	public int size() {
+		return numChunks * CHUNK_AREA;
+	}
+
+	/**
+	 * @return smallest x coordinate written so far
+	 */
+	public int minX() {
+		return minX;
+	}
+
+	/**
+	 * @return largest x coordinate written so far
+	 */
+	public int maxX() {
+		return maxX;
+	}
+
+	/**
+	 * @return smallest y coordinate written so far
+	 */
+	public int minY() {
+		return minY;
+	}
+
+	/**
+	 * @return largest y coordinate written so far
+	 */
+	public int maxY() {
+		return maxY;
+	}
+
+	/**
+	 * Returns the chunk number at chunk coordinate (cx, cy)
+	 *
+	 * @return chunk number or -1 if not allocated
+	 */
+	private int chunkAt(int cx, int cy) {
+		int dx = cx - dirMinX;
+		int dy = cy - dirMinY;
+		if (dx < 0 || dy < 0 || dx >= dirWidth || dy >= dirHeight)
+			return -1;
+		return directory[dy * dirWidth + dx];
+	}
+
+	/**
+	 * Allocates a chunk filled with the fill tile at chunk coordinate (cx,
+	 * cy), growing the directory to cover it
+	 *
+	 * @return new chunk number
+	 */
+	private int allocateChunk(int cx, int cy) {
+		if (dirWidth == 0) {
+			dirMinX = cx;
+			dirMinY = cy;
+			dirWidth = 1;
+			dirHeight = 1;
+			directory = new int[] { -1 };
+			directoryGeneration = generation;
+		} else if (cx < dirMinX || cy < dirMinY || cx >= dirMinX + dirWidth || cy >= dirMinY + dirHeight) {
+			// Grow by a few chunks at a time so walking along an edge does not
+			// re-lay the directory on every chunk
+			int newMinX = Math.min(dirMinX, cx - 2);
+			int newMinY = Math.min(dirMinY, cy - 2);
+			int newMaxX = Math.max(dirMinX + dirWidth - 1, cx + 2);
+			int newMaxY = Math.max(dirMinY + dirHeight - 1, cy + 2);
+			int newWidth = newMaxX - newMinX + 1;
+			int newHeight = newMaxY - newMinY + 1;
+			int[] newDirectory = new int[newWidth * newHeight];
+			Arrays.fill(newDirectory, -1);
+			for (int y = 0; y < dirHeight; y++) {
+				System.arraycopy(directory, y * dirWidth, newDirectory,
+						(y + dirMinY - newMinY) * newWidth + (dirMinX - newMinX), dirWidth);
+			}
+			directory = newDirectory;
+			directoryGeneration = generation;
+			dirMinX = newMinX;
+			dirMinY = newMinY;
+			dirWidth = newWidth;
+			dirHeight = newHeight;
+		}
+		if (numChunks == chunks.length) {
+			chunks = Arrays.copyOf(chunks, numChunks * 2);
+			layers = Arrays.copyOf(layers, numChunks * 2);
+			chunkGeneration = Arrays.copyOf(chunkGeneration, numChunks * 2);
+		}
+		if (directoryGeneration != generation) {
+			// Directory may be in a snapshot, write to a copy
+			directory = directory.clone();
+			directoryGeneration = generation;
+		}
+		snapshot = null;
+		char[] tiles = new char[CHUNK_AREA];
+		Arrays.fill(tiles, fill);
+		chunks[numChunks] = tiles;
+		long[] layer = new long[WorldModel.NUM_CLASSES * CHUNK_WORDS];
+		int fillClass = WorldModel.tileClass(fill);
+		if (fillClass >= 0)
+			Arrays.fill(layer, fillClass * CHUNK_WORDS, (fillClass + 1) * CHUNK_WORDS, -1L);
+		layers[numChunks] = layer;
+		chunkGeneration[numChunks] = generation;
+		directory[(cy - dirMinY) * dirWidth + (cx - dirMinX)] = numChunks;
+		return numChunks++;
+	}
+
+	/**
+	 * Sets or clears a tile's bit in one class layer of a chunk
+	 */
+	private static void setLayerBit(long[] layer, int tileClass, int offset, boolean value) {
+		if (tileClass < 0)
+			return;
+		int word = tileClass * CHUNK_WORDS + (offset >>> 6);
+		if (value)
+			layer[word] |= 1L << offset;
+		else
+			layer[word] &= ~(1L << offset);
+	}
+
+	/**
+	 * Offset of a tile inside its chunk, row major
+	 */
+	private static int offset(int x, int y) {
+		return ((y & CHUNK_MASK) << CHUNK_BITS) | (x & CHUNK_MASK);
+	}
+}
@@ -1,5 +1,4 @@
-import java.util.*;
-import java.awt.geom.Point2D;
+import java.util.Arrays;
 
 /**
  * Representation of WorldModel class Maintains world model of environment and
@@ -34,6 +33,19 @@ public class WorldModel {
 	final static char TOOL_KEY = 'k';
 	final static char TOOL_DYNAMITE = 'd';
 	final static char TOOL_TREASURE = '$';
+	// Tile classes, TileMap keeps one bitset layer for each
+	final static int CLASS_FREE = 0;
+	final static int CLASS_AGENT = 1;
+	final static int CLASS_TOOL = 2;
+	final static int CLASS_WATER = 3;
+	final static int CLASS_TREE = 4;
+	final static int CLASS_WALL = 5;
+	final static int CLASS_DOOR = 6;
+	final static int CLASS_UNSEEN = 7;
+	final static int NUM_CLASSES = 8;
+	// Classes passable without items, and on water
+	final static int PASS_NO_ITEM = (1 << CLASS_FREE) | (1 << CLASS_AGENT) | (1 << CLASS_TOOL);
+	final static int PASS_WATER = (1 << CLASS_AGENT) | (1 << CLASS_WATER);
 	// Tool Inventory
 	private boolean holdAxe;
 	private boolean holdKey;
@@ -48,11 +60,8 @@ public class WorldModel {
 	final static char INSTRUCT_CHOP = 'C';
 	final static char INSTRUCT_BLAST = 'B';
 	final static char INSTRUCT_UNLOCK = 'U';
-	// Map Size assuming environment is no larger than 80 x 80
-	final static int MAX_MAP_X = 80;
-	final static int MAX_MAP_Y = 80;
 	// Class variables
-	private Map<Point2D.Double, Character> map;
+	private TileMap map;
 	private int agentX;
 	private int agentY;
 	private int agentFacing;
@@ -60,12 +69,75 @@ public class WorldModel {
 	private int instructCounter;
 	// Location of useful Tools
 	private boolean isTreasVisible;
-	private Point2D.Double treasureLocation;
-	private LinkedList<Point2D.Double> axeLocations;
-	private LinkedList<Point2D.Double> keyLocations;
-	private LinkedList<Point2D.Double> dynamiteLocations;
-	private LinkedList<Point2D.Double> treeLocations;
-	private LinkedList<Point2D.Double> wallLocations;
+	private int treasureLocation;
+	private LocationIndex axeLocations;
+	private LocationIndex keyLocations;
+	private LocationIndex dynamiteLocations;
+	private LocationIndex treeLocations;
+	private LocationIndex wallLocations;
+	// Map version, goes up by one for every view that changed a tile class
+	private int mapVersion;
+	// Tiles whose class changed in the last view
+	private int[] changedTiles;
+	private int numChanged;
+	// Ring of (version, tile) for every class change, so consumers that
+	// fell a few versions behind can catch up without a full rebuild
+	private final static int CHANGE_LOG_SIZE = 1 << 12;
+	private int[] changeLogTile;
+	private int[] changeLogVersion;
+	private int changeLogCount;
+	// Newest version with changes overwritten in the ring
+	private int changeLogLost;
+	// Known tiles with an unseen tile in their 5x5 view, looking from one
+	// of them would show something new
+	private LocationIndex frontier;
+	// Island and water body labels
+	private Islands islands;
+	// Unseen tiles in the 5x5 around each known tile, by TileMap index
+	private byte[] unseenAround;
+	// Offsets of the 24 tiles around a tile in its 5x5 view
+	private final static int[] AROUND = new int[24];
+	// Agent tile drawn for each facing
+	private final static char[] FACING_TILE = new char[4];
+	// View cell (row * 5 + column) holding the agent
+	private final static int VIEW_CENTRE = 12;
+	// Packed offset from the agent of each view cell, for each facing. Same
+	// as rotating the view clockwise until it faces NORTH (once facing EAST,
+	// twice SOUTH, three times WEST) and reading it off row by row
+	private final static int[][] VIEW_OFFSET = new int[4][25];
+	static {
+		int around = 0;
+		for (int x = -2; x <= 2; x++) {
+			for (int y = -2; y <= 2; y++) {
+				if (x != 0 || y != 0)
+					AROUND[around++] = x * Coord.EAST_STEP + y * Coord.NORTH_STEP;
+			}
+		}
+		FACING_TILE[NORTH] = FACING_NORTH;
+		FACING_TILE[EAST] = FACING_EAST;
+		FACING_TILE[SOUTH] = FACING_SOUTH;
+		FACING_TILE[WEST] = FACING_WEST;
+		int[] rotations = new int[4];
+		rotations[EAST] = 1;
+		rotations[SOUTH] = 2;
+		rotations[WEST] = 3;
+		for (int facing = 0; facing < 4; facing++) {
+			for (int row = 0; row < 5; row++) {
+				for (int column = 0; column < 5; column++) {
+					// Turn the rotated cell back into the cell it came from
+					int fromRow = row;
+					int fromColumn = column;
+					for (int i = 0; i < rotations[facing]; i++) {
+						int tmp = fromRow;
+						fromRow = 4 - fromColumn;
+						fromColumn = tmp;
+					}
+					VIEW_OFFSET[facing][fromRow * 5 + fromColumn] = (column - 2) * Coord.EAST_STEP
+							+ (2 - row) * Coord.NORTH_STEP;
+				}
+			}
+		}
+	}
 
 	/**
 	 * Constructor
@@ -83,94 +155,76 @@ public class WorldModel {
 		// Assume Agent starts at origin (0,0)
 		this.agentX = 0;
 		this.agentY = 0;
-		// Fill map with unseen
-		this.map = new HashMap<>();
-		// Agent start origin is (0,0), so environment boundary is no larger
-		// than 160 x 160
-		for (int x = -MAX_MAP_X; x <= MAX_MAP_X; x++) {
-			for (int y = -MAX_MAP_Y; y <= MAX_MAP_Y; y++) {
-				this.map.put(new Point2D.Double(x, y), OBSTACLE_UNSEEN);
-			}
-		}
+		// Fill map with unseen, chunks are only stored once the agent sees
+		// them so the environment can be any size around origin (0,0)
+		this.map = new TileMap(OBSTACLE_UNSEEN);
 		// From Agent POV, facing NORTH
 		this.agentFacing = SOUTH;
-		this.map.put(new Point2D.Double(0, 0), FACING_NORTH);
+		this.frontier = new LocationIndex();
+		this.unseenAround = new byte[0];
+		this.islands = new Islands(map);
+		this.map.set(0, 0, FACING_NORTH);
+		seenTile(Coord.ORIGIN);
+		islands.tileChanged(Coord.ORIGIN, FACING_NORTH);
 		// Location variables
 		this.isTreasVisible = false;
-		this.axeLocations = new LinkedList<>();
-		this.keyLocations = new LinkedList<>();
-		this.dynamiteLocations = new LinkedList<>();
-		this.treeLocations = new LinkedList<>();
-		this.wallLocations = new LinkedList<>();
+		this.treasureLocation = Coord.NONE;
+		this.axeLocations = new LocationIndex();
+		this.keyLocations = new LocationIndex();
+		this.dynamiteLocations = new LocationIndex();
+		this.treeLocations = new LocationIndex();
+		this.wallLocations = new LocationIndex();
+		// Change log starts empty at version 0
+		this.mapVersion = 0;
+		this.changedTiles = new int[25];
+		this.numChanged = 0;
+		this.changeLogTile = new int[CHANGE_LOG_SIZE];
+		this.changeLogVersion = new int[CHANGE_LOG_SIZE];
+		this.changeLogCount = 0;
+		this.changeLogLost = -1;
 	}
 
 	/**
-	 * Updates the agent's perception based on environment View is rotated so to
-	 * align with static initial map direction (NORTH) Tiles in the view are
-	 * updated to agent map (overwritten) Stores new new tools as seen: axe,
-	 * key, dynamite, treasure If treasure is visible it sets it as true for
-	 * agent planning
+	 * Updates the agent's perception based on environment Each view cell is
+	 * looked up in the offset table for the agent's facing, which lines the
+	 * view up with the static initial map direction (NORTH) Tiles in the view
+	 * that changed are updated to agent map (overwritten) Stores new new tools
+	 * as seen: axe, key, dynamite, treasure If treasure is visible it sets it
+	 * as true for agent planning
 	 * 
 	 * @param view
 	 *            2D array containing 5x5 grid with agent in middle
 	 */
 	public void updateFromView(char view[][]) {
-		// Rotate view clockwise so view is facing NORTH (Agent starting
-		// direction)
-		int rotationNum = 0;
-		switch (agentFacing) {
-		case NORTH:
-			break;
-		case SOUTH:
-			rotationNum = 2;
-			break;
-		case WEST:
-			rotationNum = 3;
-			break;
-		case EAST:
-			rotationNum = 1;
-			break;
-		}
-		for (int i = 0; i < rotationNum; ++i) {
-			view = rotateClockwise(view);
-		}
-		// Update view as according to initial offset
-		for (int y = 0; y < 5; y++) {
-			for (int x = 0; x < 5; x++) {
-				char currTile = view[y][x];
-				int xFinal = agentX + (x - 2);
-				int yFinal = agentY + (2 - y);
+		int[] offsets = VIEW_OFFSET[agentFacing];
+		int agentPoint = Coord.pack(agentX, agentY);
+		numChanged = 0;
+		for (int row = 0; row < 5; row++) {
+			for (int column = 0; column < 5; column++) {
+				int cell = row * 5 + column;
 				// Agent tile, update facing
-				if (x == 2 && y == 2) {
-					switch (agentFacing) {
-					case NORTH:
-						currTile = FACING_NORTH;
-						break;
-					case SOUTH:
-						currTile = FACING_SOUTH;
-						break;
-					case WEST:
-						currTile = FACING_WEST;
-						break;
-					case EAST:
-						currTile = FACING_EAST;
-						break;
-					}
-				}
-				Point2D.Double newPoint = new Point2D.Double(xFinal, yFinal);
+				char currTile = (cell == VIEW_CENTRE) ? FACING_TILE[agentFacing] : view[row][column];
+				int newPoint = agentPoint + offsets[cell];
+				// Nothing to record if the tile is as we last saw it
+				char oldTile = map.get(newPoint);
+				if (oldTile == currTile)
+					continue;
+				boolean classChanged = tileClass(oldTile) != tileClass(currTile);
+				if (classChanged)
+					logChange(newPoint);
 				// Save the locations of important tools
-				if (currTile == TOOL_AXE && !axeLocations.contains(newPoint)) {
+				if (currTile == TOOL_AXE) {
 					axeLocations.add(newPoint);
-				} else if (currTile == TOOL_KEY && !keyLocations.contains(newPoint)) {
+				} else if (currTile == TOOL_KEY) {
 					keyLocations.add(newPoint);
-				} else if (currTile == TOOL_DYNAMITE && !dynamiteLocations.contains(newPoint)) {
+				} else if (currTile == TOOL_DYNAMITE) {
 					dynamiteLocations.add(newPoint);
 				} else if (currTile == TOOL_TREASURE && !isTreasVisible) {
 					treasureLocation = newPoint;
 					isTreasVisible = true;
-				} else if (currTile == OBSTACLE_TREE && !treeLocations.contains(newPoint)) {
+				} else if (currTile == OBSTACLE_TREE) {
 					treeLocations.add(newPoint);
-				} else if (currTile == OBSTACLE_WALL && !wallLocations.contains(newPoint)) {
+				} else if (currTile == OBSTACLE_WALL) {
 					wallLocations.add(newPoint);
 				}
 				if (currTile == OBSTACLE_SPACE) {
@@ -182,9 +236,56 @@ public class WorldModel {
 					}
 				}
 				// Update tile in map
-				map.put(newPoint, currTile);
+				map.set(Coord.x(newPoint), Coord.y(newPoint), currTile);
+				if (oldTile == OBSTACLE_UNSEEN)
+					seenTile(newPoint);
+				if (classChanged)
+					islands.tileChanged(newPoint, currTile);
+			}
+		}
+		if (numChanged > 0)
+			mapVersion++;
+	}
+
+	/**
+	 * Updates the frontier for a tile seen for the first time, it joins the
+	 * frontier if it has unseen tiles around it, and known tiles around it
+	 * have one less unseen tile
+	 * 
+	 * @param tile
+	 *            packed coordinate of the newly seen tile
+	 */
+	private void seenTile(int tile) {
+		if (unseenAround.length < map.size())
+			unseenAround = Arrays.copyOf(unseenAround, map.size());
+		int unseen = 0;
+		for (int offset : AROUND) {
+			int aroundTile = tile + offset;
+			if (map.get(aroundTile) == OBSTACLE_UNSEEN) {
+				unseen++;
+			} else if (--unseenAround[map.index(aroundTile)] == 0) {
+				frontier.remove(aroundTile);
 			}
 		}
+		unseenAround[map.index(tile)] = (byte) unseen;
+		if (unseen > 0)
+			frontier.add(tile);
+	}
+
+	/**
+	 * Records a tile whose class changes in the view being read, under the
+	 * version the map will have once the view is read
+	 * 
+	 * @param tile
+	 *            packed coordinate of changed tile
+	 */
+	private void logChange(int tile) {
+		changedTiles[numChanged++] = tile;
+		int slot = changeLogCount++ & (CHANGE_LOG_SIZE - 1);
+		if (changeLogCount > CHANGE_LOG_SIZE)
+			changeLogLost = changeLogVersion[slot];
+		changeLogTile[slot] = tile;
+		changeLogVersion[slot] = mapVersion + 1;
 	}
 
 	/**
@@ -198,8 +299,7 @@ public class WorldModel {
 		move = Character.toUpperCase(move); // Uppercase Instructions
 		// Get tile directly in front of us, this is the tile we will be moving
 		// onto in this next move
-		Point2D.Double currTilePoint = new Point2D.Double(agentX, agentY);
-		Point2D.Double nextTilePoint = getFrontTile(currTilePoint);
+		int nextTilePoint = getFrontTile(Coord.pack(agentX, agentY));
 		char frontTile = map.get(nextTilePoint);
 
 		switch (move) {
@@ -304,25 +404,6 @@ public class WorldModel {
 		}
 	}
 
-	/**
-	 * Rotates a 2D array representing a map clockwise.
-	 * 
-	 * @param oldView
-	 *            2D array to rotate clockwise
-	 * @return 2D array rotated in a clockwise direction
-	 */
-	private static char[][] rotateClockwise(char[][] oldView) {
-		final int X = oldView.length;
-		final int Y = oldView[0].length;
-		char[][] rotatedView = new char[Y][X];
-		for (int row = 0; row < X; row++) {
-			for (int column = 0; column < Y; column++) {
-				rotatedView[column][X - 1 - row] = oldView[row][column];
-			}
-		}
-		return rotatedView;
-	}
-
 	/**
 	 * Determines if a tile is passable (no items) given the game
 	 * representations
@@ -447,14 +528,81 @@ public class WorldModel {
 		return false;
 	}
 
+	/**
+	 * Returns the class of a tile, used to keep a bitset layer per class
+	 * 
+	 * @param tile
+	 *            tile representation
+	 * @return one of the CLASS_ constants, or -1 if tile belongs to no class
+	 *         (boundary)
+	 */
+	public static int tileClass(char tile) {
+		switch (tile) {
+		case OBSTACLE_SPACE:
+			return CLASS_FREE;
+		case FACING_NORTH:
+		case FACING_EAST:
+		case FACING_SOUTH:
+		case FACING_WEST:
+			return CLASS_AGENT;
+		case TOOL_AXE:
+		case TOOL_KEY:
+		case TOOL_DYNAMITE:
+		case TOOL_TREASURE:
+			return CLASS_TOOL;
+		case OBSTACLE_WATER:
+			return CLASS_WATER;
+		case OBSTACLE_TREE:
+			return CLASS_TREE;
+		case OBSTACLE_WALL:
+		case OBSTACLE_BLASTWALL:
+			return CLASS_WALL;
+		case OBSTACLE_DOOR:
+			return CLASS_DOOR;
+		case OBSTACLE_UNSEEN:
+			return CLASS_UNSEEN;
+		}
+		return -1;
+	}
+
+	/**
+	 * Bitmask of tile classes that are passable with items, matches
+	 * tilePassWithItem so it can be used with TileMap.layerMask
+	 * 
+	 * @param hasKey
+	 *            Agent holds key, door can pass
+	 * @param hasAxe
+	 *            Agent holds axe, tree can pass
+	 * @param numDyna
+	 *            Agent holds some dynamites
+	 * @param haveRaft
+	 *            Agent chopped down a tree, so has a raft
+	 * @param usingRaft
+	 *            Agent stepped onto water following using raft
+	 * @return bitmask with bit (1 << CLASS_) set for each passable class
+	 */
+	public static int passClasses(boolean haveKey, boolean haveAxe, int numDyna, boolean haveRaft,
+			boolean usingRaft) {
+		int classes = PASS_NO_ITEM;
+		if (haveKey)
+			classes |= 1 << CLASS_DOOR;
+		if (haveAxe)
+			classes |= 1 << CLASS_TREE;
+		if (haveRaft || usingRaft)
+			classes |= 1 << CLASS_WATER;
+		if (numDyna != 0)
+			classes |= 1 << CLASS_WALL;
+		return classes;
+	}
+
 	/**
 	 * Parser to getFrontTile with agentFacing
 	 * 
 	 * @param behindTile
 	 *            the tile behind front tile
-	 * @return point of tile in front
+	 * @return packed coordinate of tile in front
 	 */
-	public Point2D.Double getFrontTile(Point2D.Double behindTile) {
+	public int getFrontTile(int behindTile) {
 		return getFrontTile(behindTile, agentFacing);
 	}
 
@@ -465,26 +613,10 @@ public class WorldModel {
 	 *            the tile we wish to look in front of
 	 * @param curDirection
 	 *            the direction we are facing (NORTH, EAST, SOUTH, WEST)
-	 * @return point of tile in front
-	 */
-	public Point2D.Double getFrontTile(Point2D.Double behindTile, int agentFacing) {
-		int frontX = (int) behindTile.getX();
-		int frontY = (int) behindTile.getY();
-		switch (agentFacing) {
-		case NORTH:
-			frontY += 1;
-			break;
-		case SOUTH:
-			frontY -= 1;
-			break;
-		case WEST:
-			frontX -= 1;
-			break;
-		case EAST:
-			frontX += 1;
-			break;
-		}
-		return new Point2D.Double(frontX, frontY);
+	 * @return packed coordinate of tile in front
+	 */
+	public int getFrontTile(int behindTile, int agentFacing) {
+		return Coord.neighbour(behindTile, agentFacing);
 	}
 
 	/**
@@ -523,10 +655,10 @@ public class WorldModel {
 	}
 
 	/**
-	 * @return agent location as a 2D Point
+	 * @return agent location as a packed coordinate
 	 */
-	public Point2D.Double getAgentLoc() {
-		return new Point2D.Double(agentX, agentY);
+	public int getAgentLoc() {
+		return Coord.pack(agentX, agentY);
 	}
 
 	/**
@@ -551,51 +683,131 @@ public class WorldModel {
 	}
 
 	/**
-	 * @return the agent world model map
+	 * Live map, only safe on the thread applying views, between views.
+	 * Holding it across views is fine as long as the holder checks
+	 * getMapVersion() before trusting what it worked out from it
+	 * 
+	 * @return agent world model map
 	 */
-	public Map<Point2D.Double, Character> getMap() {
+	public TileMap getMap() {
 		return map;
 	}
 
 	/**
-	 * @return location of treasure as 2D Point
+	 * For readers on another thread, or that need the map as it is now once
+	 * later views are applied. Each snapshot makes the next view copy the
+	 * chunks it writes to, so same thread readers use getMap()
+	 * 
+	 * @return read only snapshot of the agent world model map
+	 */
+	public TileMap snapshot() {
+		return map.snapshot();
+	}
+
+	/**
+	 * Live labels, not a snapshot: every view changes them, and reading them
+	 * writes too (find halves paths). Only safe on the thread applying views,
+	 * between views, and only in step with the current map
+	 * 
+	 * @return island and water body labels of the known map
+	 */
+	public Islands getIslands() {
+		return islands;
+	}
+
+	/**
+	 * Live set, not a snapshot, every view changes it. Only safe on the
+	 * thread applying views, between views
+	 * 
+	 * @return known tiles with an unseen tile within view range of them
+	 */
+	public LocationIndex getFrontier() {
+		return frontier;
+	}
+
+	/**
+	 * Map version, only goes up, and only when a view changes the class of
+	 * some tile (moves, tools, trees or walls appearing or going). The map
+	 * itself is only written by updateFromView, updateWorldModel just tracks
+	 * the agent, so it leaves the version alone
+	 * 
+	 * @return current map version
+	 */
+	public int getMapVersion() {
+		return mapVersion;
+	}
+
+	/**
+	 * @return tiles (packed) whose class changed in the last view, empty if
+	 *         the last view changed nothing
+	 */
+	public int[] getChangedTiles() {
+		return Arrays.copyOf(changedTiles, numChanged);
+	}
+
+	/**
+	 * Tiles whose class changed after the given version, for consumers that
+	 * repair their own state instead of rebuilding it
+	 * 
+	 * @param version
+	 *            map version the consumer is up to date with
+	 * @return changed tiles (packed, may repeat) in the order they changed,
+	 *         or null if the log no longer goes back that far and the
+	 *         consumer has to rebuild
+	 */
+	public int[] changesSince(int version) {
+		if (version < changeLogLost || version > mapVersion)
+			return null;
+		int first = Math.max(0, changeLogCount - CHANGE_LOG_SIZE);
+		// Versions only go up along the log, so walk back to the first newer
+		int from = changeLogCount;
+		while (from > first && changeLogVersion[(from - 1) & (CHANGE_LOG_SIZE - 1)] > version)
+			from--;
+		int[] tiles = new int[changeLogCount - from];
+		for (int i = from; i < changeLogCount; i++)
+			tiles[i - from] = changeLogTile[i & (CHANGE_LOG_SIZE - 1)];
+		return tiles;
+	}
+
+	/**
+	 * @return location of treasure as a packed coordinate
 	 */
-	public Point2D.Double getTreasLoc() {
+	public int getTreasLoc() {
 		return treasureLocation;
 	}
 
 	/**
 	 * @return Location of keys
 	 */
-	public List<Point2D.Double> getKeyLocs() {
+	public LocationIndex getKeyLocs() {
 		return keyLocations;
 	}
 
 	/**
 	 * @return Location of axes
 	 */
-	public List<Point2D.Double> getAxeLocs() {
+	public LocationIndex getAxeLocs() {
 		return axeLocations;
 	}
 
 	/**
 	 * @return Location of dynamites
 	 */
-	public List<Point2D.Double> getDynaLocs() {
+	public LocationIndex getDynaLocs() {
 		return dynamiteLocations;
 	}
 
 	/**
 	 * @return Location of trees
 	 */
-	public List<Point2D.Double> getTreeLocs() {
+	public LocationIndex getTreeLocs() {
 		return treeLocations;
 	}
 
 	/**
 	 * @return Location of Walls
 	 */
-	public List<Point2D.Double> getWallLocs() {
+	public LocationIndex getWallLocs() {
 		return wallLocations;
 	}
 